@@ -0,0 +1,166 @@
+package com.BombingGames.EngineCore;
+
+import com.BombingGames.EngineCore.Gameobjects.AbstractGameObject;
+import com.BombingGames.EngineCore.Gameobjects.Block;
+import com.BombingGames.EngineCore.LightEngine.LightPropagation;
+import com.BombingGames.EngineCore.Map.Coordinate;
+import com.BombingGames.EngineCore.Map.Map;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas.AtlasRegion;
+
+/**
+ *A render record of a static block which is kept by the <i>ChunkRenderCache</i>. The sprites of the block, their positions, the lightlevel and the point light are calculated once, so rendering only needs the current light. When only the light of the cell or the reference of the map changes the record is updated instead of built again.
+ * @author Benedikt Vogler
+ */
+public class CachedRenderobject extends Renderobject {
+    /**The light source of a sprite which is not a side.*/
+    protected static final int GLOBALLIGHT = 3;
+    
+    private final ChunkRenderCache cache;
+    private final AtlasRegion[] regions = new AtlasRegion[3];
+    private final int[] xPos = new int[3];
+    private final int[] yPos = new int[3];
+    /**The side whose light is used, or GLOBALLIGHT.*/
+    private final int[] lightSource = new int[3];
+    /**The point light falling on every sprite.*/
+    private final int[] pointLight = new int[3];
+    private int spriteCount;
+    /**Are the sprites the sides of the block?*/
+    private boolean sides;
+    /**The factor the light gets multiplied with.*/
+    private float brightness;
+    /**The position of the cell on the screen the sprites were calculated for.*/
+    private int screenX, screenY;
+    /**The reference of the map (the chunk coordinates of the top left chunk) when the coordinate was created.*/
+    private int referenceX, referenceY;
+    /**Reused for the color of every sprite.*/
+    private static final Color color = new Color();
+
+    /**
+     * 
+     * @param cache the cache which provides the light
+     */
+    protected CachedRenderobject(ChunkRenderCache cache) {
+        this.cache = cache;
+    }
+    
+    /**
+     * Calculates the sprites of a block like <i>Block.render</i> would draw them.
+     * @param map
+     * @param block
+     * @param x relative position
+     * @param y relative position
+     * @param z position
+     */
+    protected void build(Map map, Block block, int x, int y, int z){
+        int[] reference = map.getChunkCoords(0);
+        if (reference[0] != referenceX || reference[1] != referenceY) {
+            //the coordinate was created for another reference, so the relative position can not be set
+            resetCoordinate();
+            referenceX = reference[0];
+            referenceY = reference[1];
+        }
+        setBlock(block, x, y, z);
+        Coordinate coord = (Coordinate) getCoords();
+        screenX = coord.get2DPosX();
+        screenY = coord.get2DPosY();
+        spriteCount = 0;
+        sides = block.hasSides();
+        if (sides) {
+            byte clipping = map.getClipping(coord);
+            brightness = map.getLightlevel(coord)*2;
+            if ((clipping & 1 << Block.TOPSIDE) == 0)
+                addSide(map, block, coord, Block.TOPSIDE);
+            if ((clipping & 1 << Block.LEFTSIDE) == 0)
+                addSide(map, block, coord, Block.LEFTSIDE);
+            if ((clipping & 1 << Block.RIGHTSIDE) == 0)
+                addSide(map, block, coord, Block.RIGHTSIDE);
+        } else {
+            brightness = map.getLightlevel(coord);
+            regions[0] = AbstractGameObject.getSprite(block.getCategory(), block.getId(), block.getValue());
+            xPos[0] = coord.get2DPosX() + block.getOffsetX();
+            yPos[0] = coord.get2DPosY() - (block.getDimensionZ() - 1) * AbstractGameObject.SCREEN_HEIGHT + block.getOffsetY();
+            lightSource[0] = GLOBALLIGHT;
+            pointLight[0] = map.getPointLight(coord);
+            spriteCount = 1;
+        }
+    }
+    
+    private void addSide(Map map, Block block, Coordinate coord, int side){
+        regions[spriteCount] = Block.getBlockSprite(block.getId(), block.getValue(), side);
+        xPos[spriteCount] = coord.get2DPosX() + (side == Block.RIGHTSIDE ? AbstractGameObject.SCREEN_WIDTH2 : 0);
+        yPos[spriteCount] = coord.get2DPosY() + (side != Block.TOPSIDE ? AbstractGameObject.SCREEN_WIDTH4 : 0);
+        lightSource[spriteCount] = side;
+        pointLight[spriteCount] = map.getPointLight(coord, side);
+        spriteCount++;
+    }
+
+    /**
+     * Reads the lightlevel and the point lights of the cell again. The sprites stay the same.
+     * @param map
+     */
+    protected void updateLight(Map map){
+        Coordinate coord = (Coordinate) getCoords();
+        float lightlevel = map.getLightlevel(coord);
+        if (sides) {
+            brightness = lightlevel*2;
+            for (int i = 0; i < spriteCount; i++) {
+                pointLight[i] = map.getPointLight(coord, lightSource[i]);
+            }
+        } else {
+            brightness = lightlevel;
+            pointLight[0] = map.getPointLight(coord);
+        }
+    }
+    
+    /**
+     * Moves the sprites after the reference of the map changed, e.g. after a chunk switch. The cell and its sprites stay the same.
+     */
+    @Override
+    protected void relocate() {
+        super.relocate();
+        Coordinate coord = (Coordinate) getCoords();
+        int shiftX = coord.get2DPosX() - screenX;
+        int shiftY = coord.get2DPosY() - screenY;
+        for (int i = 0; i < spriteCount; i++) {
+            xPos[i] += shiftX;
+            yPos[i] += shiftY;
+        }
+        screenX += shiftX;
+        screenY += shiftY;
+    }
+
+    @Override
+    protected void render(View view, WECamera camera) {
+        SpriteBatch batch = view.getBatch();
+        for (int i = 0; i < spriteCount; i++) {
+            color.set(cache.getLight(lightSource[i])).mul(brightness);
+            LightPropagation.addPointLight(color, pointLight[i]);
+            getObject().prepareColor(view, color);
+            batch.setColor(color);
+            batch.draw(regions[i], xPos[i], yPos[i]);
+        }
+    }
+
+    /**
+     * The position on the screen used for culling.
+     * @return 
+     */
+    public int getScreenY() {
+        return screenY;
+    }
+    
+    /**
+     * Can a block be cached? This is the case when the block does not update itself and when the cell has no offset, because then nothing changes without a change of the versions of the chunk.
+     * @param map
+     * @param block
+     * @param x relative position
+     * @param y relative position
+     * @param z position
+     * @return 
+     */
+    protected static boolean isCacheable(Map map, Block block, int x, int y, int z){
+        return !block.isTickable() && !map.getData().hasOffset(map.index(x, y, z));
+    }
+}
@@ -0,0 +1,79 @@
+package com.BombingGames.EngineCore;
+
+import com.BombingGames.EngineCore.Gameobjects.AbstractCharacter;
+import com.BombingGames.EngineCore.Map.Chunk;
+import com.BombingGames.EngineCore.Map.Map;
+
+/**
+ *The prefetcher watches the movement of a camera and lets the chunk provider prepare the chunks in the direction of travel before the camera reaches the end of the map.
+ * When the chunk switch happens the chunks are already loaded and only have to be inserted.
+ * @author Benedikt Vogler
+ */
+public class ChunkPrefetcher {
+    /**How near (in blocks) the camera must be to an end of the map to start the prefetching. 0 means one chunk.*/
+    private static int prefetchDistanceX, prefetchDistanceY;
+    /**The minimum length of a direction component to count as movement in that direction.*/
+    private static final float THRESHOLD = 0.3f;
+
+    private int lastOutputPosX, lastOutputPosY;
+    private boolean initialized;
+
+    /**
+     * Checks the movement of the camera and prefetches the chunks which will be needed next.
+     * @param camera the camera which triggers the chunk switches
+     * @param map the map which should be prepared
+     */
+    public void update(WECamera camera, Map map){
+        int directionX = 0;
+        int directionY = 0;
+
+        //the direction of the focused character is known before the camera moves
+        if (camera.getFocusentity() instanceof AbstractCharacter
+            && ((AbstractCharacter) camera.getFocusentity()).getSpeed() > 0) {
+            float[] dir = ((AbstractCharacter) camera.getFocusentity()).getDirectionVector();
+            directionX = getDirection(dir[0]);
+            directionY = getDirection(dir[1]);
+        } else if (initialized) {
+            //else use the movement of the camera since the last update
+            int deltaX = camera.getOutputPosX() - lastOutputPosX;
+            int deltaY = camera.getOutputPosY() - lastOutputPosY;
+            //a jump of a whole chunk is a chunk switch and no movement
+            if (Math.abs(deltaX) < Chunk.getScreenWidth() && Math.abs(deltaY) < Chunk.getScreenDepth()) {
+                directionX = Integer.signum(deltaX);
+                directionY = Integer.signum(deltaY);
+            }
+        }
+        lastOutputPosX = camera.getOutputPosX();
+        lastOutputPosY = camera.getOutputPosY();
+        initialized = true;
+
+        //only prefetch when the end of the map is near
+        int distanceX = prefetchDistanceX > 0 ? prefetchDistanceX : Chunk.getBlocksX();
+        int distanceY = prefetchDistanceY > 0 ? prefetchDistanceY : Chunk.getBlocksY();
+        if (directionX > 0 && camera.getRightBorder() < Map.getBlocksX()-1 - distanceX
+            || directionX < 0 && camera.getLeftBorder() > distanceX)
+            directionX = 0;
+        if (directionY > 0 && camera.getBottomBorder() < Map.getBlocksY()-1 - distanceY
+            || directionY < 0 && camera.getTopBorder() > distanceY)
+            directionY = 0;
+
+        if (directionX != 0 || directionY != 0)
+            map.prefetch(directionX, directionY);
+    }
+
+    private static int getDirection(float component){
+        if (component > THRESHOLD) return 1;
+        if (component < -THRESHOLD) return -1;
+        return 0;
+    }
+
+    /**
+     * Set how near the camera must be to an end of the map to start the prefetching.
+     * @param distanceX in blocks, 0 for one chunk
+     * @param distanceY in blocks, 0 for one chunk
+     */
+    public static void setPrefetchDistance(int distanceX, int distanceY) {
+        prefetchDistanceX = distanceX;
+        prefetchDistanceY = distanceY;
+    }
+}
@@ -0,0 +1,231 @@
+package com.BombingGames.EngineCore;
+
+import com.BombingGames.EngineCore.Gameobjects.Block;
+import com.BombingGames.EngineCore.Map.CellStorage;
+import com.BombingGames.EngineCore.Map.Chunk;
+import com.BombingGames.EngineCore.Map.Map;
+import com.badlogic.gdx.graphics.Color;
+
+/**
+ *Caches the render records of the static blocks of every chunk. The cells of a chunk are only walked again when a block of the chunk changed. When the clipping of the raytracing changed only the records of the cells whose clipping changed are built again, when the light changed the records are updated in place. After a chunk switch the chunks which stay loaded are moved instead of built again.
+ * The cached records are sorted together with the dynamic objects (entities, blocks with an offset and active blocks), so the depth order stays correct.<br>
+ * A SpriteCache is not used because the cached sprites must be interleaved with the dynamic objects.
+ * @author Benedikt Vogler
+ */
+public class ChunkRenderCache {
+    private Map map;
+    private int referenceX, referenceY;
+    /**The cached chunks by their position in the grid.*/
+    private CachedChunk[] chunks = new CachedChunk[9];
+    /**Used to sort the chunks after a chunk switch.*/
+    private CachedChunk[] movedChunks = new CachedChunk[9];
+    /**The light of the three sides and the global light. Calculated once per update.*/
+    private final Color[] lights = new Color[]{new Color(), new Color(), new Color(), new Color()};
+
+    /**
+     * Creates an empty cache.
+     */
+    public ChunkRenderCache() {
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = new CachedChunk();
+        }
+    }
+    
+    /**
+     * Updates the chunks which changed since the last update and the light.
+     * @param map the current map
+     */
+    public void update(Map map){
+        int[] reference = map.getChunkCoords(0);
+        if (map != this.map) {
+            this.map = map;
+            for (CachedChunk chunk : chunks) {
+                chunk.valid = false;
+            }
+        } else if (reference[0] != referenceX || reference[1] != referenceY) {
+            move(reference[0]-referenceX, reference[1]-referenceY);
+        }
+        referenceX = reference[0];
+        referenceY = reference[1];
+        
+        for (int pos = 0; pos < 9; pos++) {
+            chunks[pos].update(pos);
+        }
+        
+        if (Controller.getLightengine() != null) {
+            for (int side = 0; side < 3; side++) {
+                Controller.getLightengine().getColorOfSide(side, lights[side]);
+            }
+            Controller.getLightengine().getGlobalLight(lights[CachedRenderobject.GLOBALLIGHT]);
+        } else {
+            for (Color light : lights) {
+                light.set(Color.GRAY);
+            }
+        }
+    }
+    
+    /**
+     * Moves the chunks which are still loaded after a chunk switch to their new position in the grid. The chunks which left the grid are reused for the new chunks.
+     * @param shiftX how many chunks the reference moved in x direction
+     * @param shiftY how many chunks the reference moved in y direction
+     */
+    private void move(int shiftX, int shiftY){
+        java.util.Arrays.fill(movedChunks, null);
+        for (int pos = 0; pos < 9; pos++) {
+            int oldX = pos%3 + shiftX;
+            int oldY = pos/3 + shiftY;
+            if (oldX >= 0 && oldX < 3 && oldY >= 0 && oldY < 3) {
+                movedChunks[pos] = chunks[oldX + oldY*3];
+                movedChunks[pos].relocate();
+            }
+        }
+        int pos = 0;
+        for (int oldPos = 0; oldPos < 9; oldPos++) {
+            int newX = oldPos%3 - shiftX;
+            int newY = oldPos/3 - shiftY;
+            if (newX < 0 || newX >= 3 || newY < 0 || newY >= 3) {
+                while (movedChunks[pos] != null) pos++;
+                movedChunks[pos] = chunks[oldPos];
+                movedChunks[pos].valid = false;
+            }
+        }
+        CachedChunk[] swap = chunks;
+        chunks = movedChunks;
+        movedChunks = swap;
+    }
+    
+    /**
+     * The amount of cached records of a chunk.
+     * @param pos the position of the chunk in the grid
+     * @return 
+     */
+    public int getSize(int pos){
+        return chunks[pos].recordCount;
+    }
+    
+    /**
+     * Returns a cached record.
+     * @param pos the position of the chunk in the grid
+     * @param i the number of the record
+     * @return 
+     */
+    public CachedRenderobject get(int pos, int i){
+        return chunks[pos].records[i];
+    }
+    
+    /**
+     * The light of the current frame.
+     * @param source the side or <i>CachedRenderobject.GLOBALLIGHT</i>
+     * @return 
+     */
+    protected Color getLight(int source){
+        return lights[source];
+    }
+    
+    /**
+     * The cache of a single chunk. It knows every cell which can be cached and the records of the cells which are visible.
+     */
+    private class CachedChunk {
+        private boolean valid;
+        private int geometryVersion, visibilityVersion, lightVersion;
+        /**The static and not hidden cells, as index inside the chunk: (x*blocksY + y)*blocksZ + z.*/
+        private int[] cells = new int[64];
+        /**The clipping of the cells when they were checked the last time. -1 if the record of the cell must be built.*/
+        private byte[] clippings = new byte[64];
+        /**The record of every cell. Created when the cell is visible for the first time.*/
+        private CachedRenderobject[] cellRecords = new CachedRenderobject[64];
+        private int cellCount;
+        /**The records of the visible cells.*/
+        private CachedRenderobject[] records = new CachedRenderobject[64];
+        private int recordCount;
+        
+        /**
+         * Checks the versions of the chunk and does only the work needed for the changes.
+         * @param pos the position of the chunk in the grid
+         */
+        private void update(int pos){
+            int geometry = map.getChunkVersion(pos, CellStorage.GEOMETRY);
+            int visibility = map.getChunkVersion(pos, CellStorage.VISIBILITY);
+            int light = map.getChunkVersion(pos, CellStorage.LIGHT);
+            boolean rebuilt = !valid || geometry != geometryVersion;
+            if (rebuilt) collect(pos);
+            if (rebuilt || visibility != visibilityVersion) filter(pos);
+            if (!rebuilt && light != lightVersion) {
+                for (int i = 0; i < recordCount; i++) {
+                    records[i].updateLight(map);
+                }
+            }
+            geometryVersion = geometry;
+            visibilityVersion = visibility;
+            lightVersion = light;
+            valid = true;
+        }
+        
+        /**
+         * Collects the cells of the chunk which can be cached. Every record must be built again.
+         * @param pos the position of the chunk in the grid
+         */
+        private void collect(int pos){
+            int startX = Chunk.getBlocksX()*(pos%3);
+            int startY = Chunk.getBlocksY()*(pos/3);
+            cellCount = 0;
+            for (int x = 0; x < Chunk.getBlocksX(); x++)
+                for (int y = 0; y < Chunk.getBlocksY(); y++)
+                    for (int z = 0; z < Chunk.getBlocksZ(); z++) {
+                        Block block = map.getStoredBlock(startX + x, startY + y, z);
+                        if (!block.isHidden() && CachedRenderobject.isCacheable(map, block, startX + x, startY + y, z)) {
+                            if (cellCount == cells.length) {
+                                cells = java.util.Arrays.copyOf(cells, cellCount*2);
+                                clippings = java.util.Arrays.copyOf(clippings, cellCount*2);
+                                cellRecords = java.util.Arrays.copyOf(cellRecords, cellCount*2);
+                            }
+                            cells[cellCount] = (x*Chunk.getBlocksY() + y)*Chunk.getBlocksZ() + z;
+                            clippings[cellCount] = -1;
+                            cellCount++;
+                        }
+                    }
+        }
+        
+        /**
+         * Collects the records of the visible cells. Only the records of cells whose clipping changed are built again.
+         * @param pos the position of the chunk in the grid
+         */
+        private void filter(int pos){
+            int startX = Chunk.getBlocksX()*(pos%3);
+            int startY = Chunk.getBlocksY()*(pos/3);
+            CellStorage data = map.getData();
+            int count = 0;
+            for (int i = 0; i < cellCount; i++) {
+                int x = startX + cells[i] / (Chunk.getBlocksY()*Chunk.getBlocksZ());
+                int y = startY + cells[i] / Chunk.getBlocksZ() % Chunk.getBlocksY();
+                int z = cells[i] % Chunk.getBlocksZ();
+                byte clipping = data.getClipping(map.index(x, y, z));
+                if ((clipping & CellStorage.CLIPPED) == 0) {
+                    if (clipping != clippings[i]) {
+                        if (cellRecords[i] == null)
+                            cellRecords[i] = new CachedRenderobject(ChunkRenderCache.this);
+                        cellRecords[i].build(map, map.getStoredBlock(x, y, z), x, y, z);
+                    }
+                    if (count == records.length)
+                        records = java.util.Arrays.copyOf(records, count*2);
+                    records[count] = cellRecords[i];
+                    count++;
+                }
+                clippings[i] = clipping;
+            }
+            //drop references which are not used any more
+            java.util.Arrays.fill(records, count, recordCount > count ? recordCount : count, null);
+            recordCount = count;
+        }
+        
+        /**
+         * Moves the records after a chunk switch. The cells stay the same, only their relative position changed. The records of clipped cells are built again when they get visible, so they are not moved.
+         */
+        private void relocate(){
+            if (!valid) return;
+            for (int i = 0; i < recordCount; i++) {
+                records[i].relocate();
+            }
+        }
+    }
+}
@@ -5,8 +5,9 @@ import com.BombingGames.EngineCore.Gameobjects.AbstractEntity;
 import com.BombingGames.EngineCore.Gameobjects.AbstractGameObject;
 import com.BombingGames.EngineCore.Gameobjects.Block;
 import com.BombingGames.EngineCore.LightEngine.LightEngine;
-import com.BombingGames.EngineCore.Map.Cell;
+import com.BombingGames.EngineCore.LightEngine.LightPropagation;
 import com.BombingGames.EngineCore.Map.Coordinate;
+import com.BombingGames.EngineCore.Map.DirtyRegion;
 import com.BombingGames.EngineCore.Map.Map;
 import com.BombingGames.EngineCore.Map.Minimap;
 import com.BombingGames.EngineCore.Map.Point;
@@ -25,6 +26,8 @@ public class Controller {
     private static LightEngine lightEngine;
     private static Map map;
     private static boolean recalcRequested;
+    /**Splits the time into the ticks of the simulation.*/
+    private static final FixedTimestep timestep = new FixedTimestep(60, 5);
     
         
     private final ArrayList<WECamera> cameras = new ArrayList<WECamera>(6);
@@ -34,6 +37,7 @@ public class Controller {
     private AbstractCharacter player;  
     
     private FPSdiag fpsdiag;
+    private final ChunkPrefetcher prefetcher = new ChunkPrefetcher();
 
     /**
      * This method works like a constructor. Everything is loaded. Set you custom chunk generator before calling this method.
@@ -46,17 +50,19 @@ public class Controller {
     }
     
      /**
-     * Main method which is called every refresh.
+     * Main method which is called every refresh. The simulation is advanced in ticks of a fixed length (see <i>tick</i>), everything else once per call.
      * @param delta time since last call
      */
     public void update(float delta) {
         delta *= timespeed;
-        if (lightEngine != null) lightEngine.update(delta);
         
          //update the log
         GameplayScreen.msgSystem().update(delta);
         
         if (ENABLECHUNKSWITCH && cameras.size() >0){
+            //prepare the chunks in the direction of travel
+            prefetcher.update(cameras.get(0), map);
+            
             //earth to right
             if (cameras.get(0).getLeftBorder() <= 0)
                 map.setCenter(3);
@@ -72,24 +78,13 @@ public class Controller {
                 map.setCenter(7);
         }
         
-        //update every static update method
-        AbstractGameObject.updateStaticUpdates(delta);
-        
-        //update every block on the map
-        Cell[][][] mapdata = map.getData();
-        for (int x=0; x < Map.getBlocksX(); x++)
-            for (int y=0; y < Map.getBlocksY(); y++)
-                for (int z=0; z < Map.getBlocksZ(); z++)
-                    mapdata[x][y][z].getBlock().update(delta);
+        //insert the chunks which were loaded in the background
+        map.update();
         
-        //update every entity
-        for (AbstractEntity entity : map.getEntitys())
-            entity.update(delta);
-       
-        for (int i = map.getEntitys().size()-1; i >= 0; i--) {
-            if (map.getEntitys().get(i).shouldBeDestroyed())
-                map.getEntitys().remove(i);
-        }
+        //advance the simulation
+        int ticks = timestep.advance(delta);
+        for (int i = 0; i < ticks; i++)
+            tick(timestep.getTickLength());
         
         for (WECamera camera : cameras) {
             camera.update();
@@ -103,7 +98,39 @@ public class Controller {
 
     
      /**
-     * Informs the map that a recalc is requested. It will do it in the next update. This method  to limit update calls to to per frame
+     * Advances the simulation by one tick: the light, the blocks and the entitys.
+     * @param delta the length of a tick in ms
+     */
+    protected void tick(float delta){
+        if (lightEngine != null) lightEngine.update(delta);
+        
+        //update every static update method
+        AbstractGameObject.updateStaticUpdates(delta);
+        
+        //update every block on the map
+        map.updateBlocks(delta);
+        
+        //update every entity
+        for (AbstractEntity entity : map.getEntitys()) {
+            entity.savePosition();
+            entity.update(delta);
+            map.getEntityGrid().update(entity);
+        }
+       
+        map.removeDestroyedEntitys();
+    }
+    
+    /**
+     * Returns the timestep which splits the time into the ticks of the simulation. Use it to change the tickrate.
+     * @return 
+     */
+    public static FixedTimestep getTimestep() {
+        return timestep;
+    }
+    
+    /**
+     * Informs the map that a recalc of the whole map is requested. It will do it in the next update. This method  to limit update calls to to per frame.
+     * Changes made through the map are registered automatically and do not need this.
      */
     public static void requestRecalc(){
         Gdx.app.debug("Controller", "A recalc was requested.");
@@ -112,15 +139,27 @@ public class Controller {
     
     /**
      * When the recalc was requested it calls raytracing and light recalculing. This method should be called every update.
-     * Request a recalc with <i>reuqestRecalc()</i>. 
+     * Request a recalc with <i>reuqestRecalc()</i>. Without a request only the parts of the map which changed since the last update are recalculated (see <i>Map.getDirtyRegion()</i>).
      */
     public void recalcIfRequested(){
+        DirtyRegion dirtyRegion = map.getDirtyRegion();
         if (recalcRequested) {
             Gdx.app.log("Controller", "Recalcing.");
             WECamera.raytracing();
             LightEngine.calcSimpleLight();
+            LightPropagation.calcPointLights();
             if (minimap != null) minimap.update();
             recalcRequested = false;
+            dirtyRegion.clear();
+        } else if (!dirtyRegion.isEmpty()) {
+            //only the changed parts of the map
+            WECamera.raytracing(dirtyRegion);
+            if (dirtyRegion.hasBlockChanges()) {
+                LightEngine.calcSimpleLight(dirtyRegion);
+                LightPropagation.calcPointLights(dirtyRegion);
+                if (minimap != null) minimap.update();
+            }
+            dirtyRegion.clear();
         }
     }
     
@@ -128,6 +167,7 @@ public class Controller {
      * Creates a new Map.
      */
     public static void newMap(){
+        if (map != null) map.dispose();
         map = new Map(!MainMenuScreen.shouldLoadMap(),-45);
         map.fillWithBlocks();
     }
@@ -140,6 +180,15 @@ public class Controller {
         return map;
     }
     
+    /**
+     * Use a map which was created without <i>newMap</i>, e.g. by a tool which runs without the game. The old map is disposed.
+     * @param map the new map
+     */
+    public static void setMap(Map map) {
+        if (Controller.map != null && Controller.map != map) Controller.map.dispose();
+        Controller.map = map;
+    }
+    
     
     /**
      * Returns the player
@@ -282,12 +331,14 @@ public class Controller {
         if (depthCheck && pos.onLoadedMap()) {
             coords.setRelY(coords.getRelY() + (depthCheck? coords.getZ()*2 : 0));
             //if selection is not found by that specify it
-            if (coords.getBlock().isHidden()){
+            if (map.getStoredBlock(coords.getRelX(), coords.getRelY(), coords.getZ()).isHidden()){
                 //trace ray down to bottom. for each step 2 y and 1 z down
+                //cells above the highest block of their column are air, so the block is only read below it
                 do {
                     coords.setRelY(coords.getRelY()-2);
                     coords.setZ(coords.getZ()-1);
-                } while (coords.getBlock().isHidden() && coords.getZ()>0);
+                } while (coords.getZ()>0
+                    && (coords.getZ() > map.getTopNonAir(coords.getRelX(), coords.getRelY()) || map.getStoredBlock(coords.getRelX(), coords.getRelY(), coords.getZ()).isHidden()));
             }
         }
         
@@ -298,5 +349,6 @@ public class Controller {
         for (AbstractEntity entity :  map.getEntitys()) {
             entity.dispose();
         }
+        map.dispose();
     }
 }
\ No newline at end of file
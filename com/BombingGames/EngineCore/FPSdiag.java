@@ -4,9 +4,12 @@ import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.GL10;
 import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
+import java.lang.reflect.Method;
 
 /**
  *The FPS diagramm collects some fps values and creates a diagram and analyzes it.
+ * It also shows how many bytes the rendering of the cameras allocated and how often the batch was flushed in the last frame, so that regressions in the render path are visible.
+ * The allocated bytes are measured with <i>com.sun.management.ThreadMXBean</i>. Where it does not exist (e.g. Android) only the allocations which are counted by hand with <i>countAllocations</i> are shown.
  * @author Benedikt Vogler
  */
 public class FPSdiag {
@@ -15,6 +18,43 @@ public class FPSdiag {
     private int field;//the current field number
     private final int xPos, yPos, width;
     private boolean visible = true;
+    /**The allocations counted since the last update.*/
+    private static int allocationCounter;
+    /**The allocations of the last frame.*/
+    private int allocations;
+    /**The bean of the threads and its method getThreadAllocatedBytes(long). null if the platform can not measure allocations.*/
+    private static Object threadBean;
+    private static Method allocatedBytesMethod;
+    /**The id of the render thread as argument of the method. Reused, so the measurement creates as few objects as possible.*/
+    private static Object[] threadId;
+    /**The bytes which the measurement itself allocates.*/
+    private long measureOverhead;
+    /**The allocated bytes of the render thread when the measurement started.*/
+    private long measureStart = -1;
+    /**The bytes allocated by the rendering since the last update.*/
+    private long allocatedBytesCounter;
+    /**The bytes allocated by the rendering of the last frame.*/
+    private long allocatedBytes;
+    
+    static {
+        try {
+            Object bean = Class.forName("java.lang.management.ManagementFactory").getMethod("getThreadMXBean").invoke(null);
+            Class<?> sunBean = Class.forName("com.sun.management.ThreadMXBean");
+            if (sunBean.isInstance(bean)
+                && (Boolean) sunBean.getMethod("isThreadAllocatedMemorySupported").invoke(bean)
+                && (Boolean) sunBean.getMethod("isThreadAllocatedMemoryEnabled").invoke(bean)) {
+                allocatedBytesMethod = sunBean.getMethod("getThreadAllocatedBytes", long.class);
+                threadBean = bean;
+            }
+        } catch (Exception ex) {
+            //the platform can not measure the allocations, so only the counted ones are shown
+            allocatedBytesMethod = null;
+        }
+    }
+    /**The flushes counted since the last update.*/
+    private static int flushCounter;
+    /**The flushes of the last frame.*/
+    private int flushes;
 
     /**
      *
@@ -25,6 +65,10 @@ public class FPSdiag {
         this.xPos = xPos;
         this.yPos = yPos;
         width = 12;
+        if (isMeasuringAllocations()) {
+            long before = getAllocatedBytes();
+            measureOverhead = getAllocatedBytes() - before;
+        }
     }
     
     /**
@@ -32,6 +76,13 @@ public class FPSdiag {
      * @param delta
      */
     public void update(float delta){
+        allocations = allocationCounter;
+        allocationCounter = 0;
+        allocatedBytes = allocatedBytesCounter;
+        allocatedBytesCounter = 0;
+        flushes = flushCounter;
+        flushCounter = 0;
+        
         timeSinceUpdate += delta;
         if (timeSinceUpdate>1000){//update only every second
             timeSinceUpdate = 0;
@@ -40,9 +91,56 @@ public class FPSdiag {
             if (field >= data.length) field = 0; //start over           
             
             data[field] = Gdx.graphics.getFramesPerSecond();//save fps
+            
+            //the reflection gets faster after some calls, so its own allocations are measured again
+            if (isMeasuringAllocations()) {
+                long before = getAllocatedBytes();
+                measureOverhead = getAllocatedBytes() - before;
+            }
+        }
+    }
+    
+    /**
+     * Can the platform measure the allocated bytes?
+     * @return false if only the allocations counted with <i>countAllocations</i> are available
+     */
+    public static boolean isMeasuringAllocations(){
+        return allocatedBytesMethod != null;
+    }
+    
+    /**
+     * The bytes the current thread allocated since it started.
+     * @return -1 if it can not be measured
+     */
+    private static long getAllocatedBytes(){
+        if (allocatedBytesMethod == null) return -1;
+        try {
+            if (threadId == null) threadId = new Object[]{Thread.currentThread().getId()};
+            return (Long) allocatedBytesMethod.invoke(threadBean, threadId);
+        } catch (Exception ex) {
+            allocatedBytesMethod = null;
+            return -1;
         }
     }
     
+    /**
+     * Starts to measure the allocations of the rendering. Call it on the render thread before the cameras render.
+     */
+    public void startMeasure(){
+        measureStart = getAllocatedBytes();
+    }
+    
+    /**
+     * Stops to measure the allocations of the rendering and adds them to the current frame.
+     */
+    public void stopMeasure(){
+        if (measureStart < 0) return;
+        long end = getAllocatedBytes();
+        if (end >= 0)
+            allocatedBytesCounter += Math.max(0, end - measureStart - measureOverhead);
+        measureStart = -1;
+    }
+    
     /**
      *Renders the diagramm
      * @param view
@@ -77,6 +175,12 @@ public class FPSdiag {
             
             shRenderer.end();
             Gdx.gl.glDisable(GL10.GL_BLEND);
+            
+            if (isMeasuringAllocations())
+                view.drawString("Allocated by rendering: "+allocatedBytes+" bytes", xPos, yPos+10);
+            else
+                view.drawString("Counted allocations: "+allocations, xPos, yPos+10);
+            view.drawString("Flushes: "+flushes, xPos, yPos+25);
      }
     }
     
@@ -104,6 +208,48 @@ public class FPSdiag {
         return avg;
     }
 
+    /**
+     * Count objects which were created by the render path. Call it where objects are created every frame. This only knows the allocations which are counted, use <i>getRenderAllocatedBytes</i> where it is available.
+     * @param count the amount of created objects
+     */
+    public static void countAllocations(int count){
+        allocationCounter += count;
+    }
+
+    /**
+     * The amount of objects which were counted as created by the render path in the last frame.
+     * @return
+     */
+    public int getAllocations() {
+        return allocations;
+    }
+    
+    /**
+     * The bytes allocated by the rendering of the cameras in the last frame.
+     * @return -1 if the platform can not measure it
+     * @see #isMeasuringAllocations() 
+     */
+    public long getRenderAllocatedBytes() {
+        if (!isMeasuringAllocations()) return -1;
+        return allocatedBytes;
+    }
+
+    /**
+     * Count flushes of the sprite batch. Every flush draws the collected sprites with one render call, so use the difference of <i>SpriteBatch.totalRenderCalls</i>.
+     * @param count the amount of flushes
+     */
+    public static void countFlushes(int count){
+        flushCounter += count;
+    }
+
+    /**
+     * The amount of flushes of the sprite batch in the last frame.
+     * @return
+     */
+    public int getFlushes() {
+        return flushes;
+    }
+
     /**
      * Is the diagramm visible?
      * @return 
@@ -0,0 +1,114 @@
+package com.BombingGames.EngineCore;
+
+/**
+ *Splits the time of the frames into ticks of a fixed length, so the simulation always advances in the same steps, no matter how fast the frames are rendered.
+ * The time which is left after the last tick of a frame is kept for the next frame. How far the simulation is into the next tick is used to render the entitys between their last two positions.<br>
+ * After a very slow frame only a limited number of ticks is done. The rest of the time is dropped, so the simulation does not fall further and further behind.
+ * @author Benedikt Vogler
+ */
+public class FixedTimestep {
+    /**The length of a tick in ms.*/
+    private float tickLength;
+    /**The most ticks which are done in one frame.*/
+    private int maxTicksPerFrame;
+    /**The time which was not simulated yet in ms.*/
+    private float accumulator;
+    private long tickCount;
+    private float droppedTime;
+
+    /**
+     *
+     * @param tickrate the amount of ticks per second
+     * @param maxTicksPerFrame the most ticks which are done in one frame
+     */
+    public FixedTimestep(float tickrate, int maxTicksPerFrame) {
+        setTickrate(tickrate);
+        setMaxTicksPerFrame(maxTicksPerFrame);
+    }
+
+    /**
+     * Adds the time of a frame and returns how many ticks have to be done.
+     * @param delta the time of the frame in ms
+     * @return the amount of ticks to do now. Every tick is <i>getTickLength()</i> long.
+     */
+    public int advance(float delta){
+        accumulator += delta;
+        int ticks = (int) (accumulator / tickLength);
+        if (ticks > maxTicksPerFrame) {
+            //keep only the part of the time which is into the next tick
+            float kept = accumulator % tickLength;
+            droppedTime += accumulator - kept - maxTicksPerFrame*tickLength;
+            accumulator = kept + maxTicksPerFrame*tickLength;
+            ticks = maxTicksPerFrame;
+        }
+        accumulator -= ticks*tickLength;
+        tickCount += ticks;
+        return ticks;
+    }
+
+    /**
+     * How far is the simulation into the next tick? Use this to render between the state of the last tick and the one before.
+     * @return between 0 (at the last tick) and 1 (at the next tick)
+     */
+    public float getAlpha(){
+        return accumulator / tickLength;
+    }
+
+    /**
+     * The length of a tick.
+     * @return in ms
+     */
+    public float getTickLength() {
+        return tickLength;
+    }
+
+    /**
+     *
+     * @return the amount of ticks per second
+     */
+    public float getTickrate() {
+        return 1000f / tickLength;
+    }
+
+    /**
+     * Sets how many ticks are done every second.
+     * @param tickrate the amount of ticks per second
+     */
+    public void setTickrate(float tickrate) {
+        if (tickrate <= 0) throw new IllegalArgumentException("The tickrate must be positive: "+tickrate);
+        this.tickLength = 1000f / tickrate;
+    }
+
+    /**
+     *
+     * @return the most ticks which are done in one frame
+     */
+    public int getMaxTicksPerFrame() {
+        return maxTicksPerFrame;
+    }
+
+    /**
+     * Sets how many ticks may be done in one frame to catch up after a slow frame.
+     * @param maxTicksPerFrame at least 1
+     */
+    public void setMaxTicksPerFrame(int maxTicksPerFrame) {
+        if (maxTicksPerFrame < 1) throw new IllegalArgumentException("At least one tick per frame is needed: "+maxTicksPerFrame);
+        this.maxTicksPerFrame = maxTicksPerFrame;
+    }
+
+    /**
+     * The amount of ticks since the start.
+     * @return
+     */
+    public long getTickCount() {
+        return tickCount;
+    }
+
+    /**
+     * The time which was not simulated because the frames were too slow.
+     * @return in ms
+     */
+    public float getDroppedTime() {
+        return droppedTime;
+    }
+}
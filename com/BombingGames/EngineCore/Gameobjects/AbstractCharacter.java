@@ -262,6 +262,14 @@ public abstract class AbstractCharacter extends AbstractEntity {
         return dir;
     }
 
+    /**
+     * Returns the current walking speed. It is 0 when the character is standing.
+     * @return 
+     */
+    public float getSpeed() {
+        return speed;
+    }
+
     /**
      * Sets the sound to be played when falling.
      * @param fallingSound
@@ -1,10 +1,14 @@
 package com.BombingGames.EngineCore.Gameobjects;
 
 import com.BombingGames.EngineCore.Controller;
+import com.BombingGames.EngineCore.View;
+import com.BombingGames.EngineCore.WECamera;
 import com.BombingGames.EngineCore.Map.AbstractPosition;
-import com.BombingGames.EngineCore.Map.Coordinate;
+import com.BombingGames.EngineCore.Map.EntityGrid;
 import com.BombingGames.EngineCore.Map.Map;
 import com.BombingGames.EngineCore.Map.Point;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.utils.Pool;
 
 /**
  *An entity is a game object wich is self aware that means it knows it's position.
@@ -48,7 +52,24 @@ public abstract class AbstractEntity extends AbstractGameObject implements IsSel
         OFFSET[42][0][1] = 40;
     }
     
+    /**The duration of every step of the explosion animation in ms.*/
+    private static final int[] EXPLOSIONANIMATION = new int[]{700,2000};
+    
+    /**The explosions which were destroyed and can be used again. Explosions are spawned in big numbers, so they are not created every time.*/
+    private static final Pool<AnimatedEntity> explosionPool = new Pool<AnimatedEntity>(64, 1024) {
+        @Override
+        protected AnimatedEntity newObject() {
+            return new AnimatedEntity(41, 0, EXPLOSIONANIMATION, true, false);
+        }
+    };
+    
     private boolean destroy;
+    /**true if the entity came from a pool and goes back when it gets removed from the map.*/
+    private boolean pooled;
+    /**The cell of the entity grid where the entity is registered.*/
+    private int gridCell = EntityGrid.NOCELL;
+    /**The absolute position before the last tick. Used to render between the last two ticks.*/
+    private float lastX, lastY, lastHeight;
    
     /**
      * Create an abstractEntity. You should use Block.getInstance(int) 
@@ -74,13 +95,8 @@ public abstract class AbstractEntity extends AbstractGameObject implements IsSel
                     entity = new Player(id, point);
                     break;
             case 41: //explosion
-                    entity = new AnimatedEntity(
-                                id,
-                                value,
-                                new int[]{700,2000},
-                                true,
-                                false
-                            );
+                    entity = explosionPool.obtain();
+                    entity.pooled = true;
                     break;
             case 42: entity = new CharacterShadow(id);
                     break;
@@ -112,6 +128,7 @@ public abstract class AbstractEntity extends AbstractGameObject implements IsSel
     @Override
     public void setPos(AbstractPosition pos) {
         this.point = pos.getPoint();
+        if (gridCell != EntityGrid.NOCELL) Controller.getMap().getEntityGrid().update(this);
     }
     
     /**
@@ -134,14 +151,63 @@ public abstract class AbstractEntity extends AbstractGameObject implements IsSel
         int z = (int) ((getPos().getHeight()-1)/GAME_DIMENSION);
         if (z > Map.getBlocksZ()-1) z = Map.getBlocksZ()-1;
         
-        return new Coordinate(point.getCoord().getRelX(), point.getCoord().getRelY(), z, true).getBlock().isObstacle();
+        return Controller.getMap().getStoredBlock(point.getCoord().getRelX(), point.getCoord().getRelY(), z).isObstacle();
     }
     
     /**
      * add this entity to the map-> let it exist
      */
     public void exist(){
-        Controller.getMap().getEntitys().add(this);
+        savePosition();
+        Controller.getMap().addEntity(this);
+    }
+    
+    /**
+     * Remembers the current position as the position before the next tick. Called by the controller before every tick.
+     */
+    public void savePosition(){
+        lastX = point.getAbsX();
+        lastY = point.getAbsY();
+        lastHeight = point.getHeight();
+    }
+    
+    /**
+     * The x position on the screen between the position before the last tick and the current position. This is where the entity is drawn.
+     * @return in screen units
+     * @see com.BombingGames.EngineCore.FixedTimestep#getAlpha() 
+     */
+    public int getInterpolated2DPosX(){
+        float lag = 1 - Controller.getTimestep().getAlpha();
+        return point.get2DPosX() + (int) ((lastX - point.getAbsX()) * lag);
+    }
+    
+    /**
+     * The y position on the screen between the position before the last tick and the current position. This is where the entity is drawn.
+     * @return in screen units
+     * @see com.BombingGames.EngineCore.FixedTimestep#getAlpha() 
+     */
+    public int getInterpolated2DPosY(){
+        float lag = 1 - Controller.getTimestep().getAlpha();
+        return point.get2DPosY()
+            + (int) (((lastY - point.getAbsY()) / 2 - (lastHeight - point.getHeight()) / Math.sqrt(2)) * lag);
+    }
+    
+    /**
+     * Draws the entity between its position before the last tick and its current position, so the movement is smooth when more frames than ticks are rendered.
+     * @param view the view using this render method
+     * @param camera The camera rendering the scene
+     * @param pos the position where the entity is rendered. Only the own position is interpolated.
+     * @param color custom blending color
+     */
+    @Override
+    public void render(View view, WECamera camera, AbstractPosition pos, Color color) {
+        if (pos != point) {
+            super.render(view, camera, pos, color);
+        } else if (!isHidden() && !isClipped()) {
+            int xPos = getInterpolated2DPosX() + getOffsetX();
+            int yPos = getInterpolated2DPosY() - (getDimensionZ() - 1) * SCREEN_HEIGHT + getOffsetY();
+            renderAt(view, xPos, yPos, color);
+        }
     }
   
     /**
@@ -177,11 +243,30 @@ public abstract class AbstractEntity extends AbstractGameObject implements IsSel
     } 
     
    /**
-     * Deletes the object from the map. The opposite to exist();
+     * Deletes the object from the map. The opposite to exist(); The map removes it in the next update. Entitys from a pool are then given back to the pool, so do not keep a reference to them.
      */
     public void destroy(){
         destroy=true;
     }
+    
+    /**
+     * Gives an entity which was removed from the map back to its pool, so it can be reused by <i>getInstance</i>. Entitys which were not created by a pool are ignored.
+     * @param entity an entity which is not in the map anymore
+     */
+    public static void free(AbstractEntity entity){
+        //the pool resets poolable entitys
+        if (entity.pooled && entity instanceof AnimatedEntity)
+            explosionPool.free((AnimatedEntity) entity);
+    }
+    
+    /**
+     * Brings a destroyed entity back to the state after its creation. Called by the pool of a poolable entity when it is freed.
+     */
+    protected void reset(){
+        destroy = false;
+        setHidden(false);
+        setValue(0);
+    }
 
     /**
      *
@@ -190,4 +275,20 @@ public abstract class AbstractEntity extends AbstractGameObject implements IsSel
     public boolean shouldBeDestroyed() {
         return destroy;
     }
+
+    /**
+     * The cell of the <i>EntityGrid</i> where the entity is registered.
+     * @return the key of the cell or <i>EntityGrid.NOCELL</i> if the entity is not in the grid
+     */
+    public int getGridCell() {
+        return gridCell;
+    }
+
+    /**
+     * Only used by the <i>EntityGrid</i>.
+     * @param gridCell the key of the cell
+     */
+    public void setGridCell(int gridCell) {
+        this.gridCell = gridCell;
+    }
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package com.BombingGames.EngineCore.Gameobjects;
 
 import com.BombingGames.EngineCore.Controller;
+import com.BombingGames.EngineCore.LightEngine.LightPropagation;
 import com.BombingGames.EngineCore.LightEngine.PseudoGrey;
 import com.BombingGames.EngineCore.Map.AbstractPosition;
 import com.BombingGames.EngineCore.View;
@@ -9,7 +10,6 @@ import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.GL10;
 import com.badlogic.gdx.graphics.Pixmap;
-import com.badlogic.gdx.graphics.g2d.Sprite;
 import com.badlogic.gdx.graphics.g2d.TextureAtlas;
 import com.badlogic.gdx.graphics.g2d.TextureAtlas.AtlasRegion;
 
@@ -66,6 +66,8 @@ public abstract class AbstractGameObject {
     private static TextureAtlas spritesheet;
     private static Pixmap pixmap;
     private static final AtlasRegion[][][] sprites = new AtlasRegion['z'][OBJECTTYPESCOUNT][VALUESCOUNT];//{category}{id}{value}
+    /**The color used by the render methods. It is reused, so rendering creates no garbage.*/
+    private static final Color renderColor = new Color();
     
     private final int id; 
     private int value;
@@ -105,17 +107,18 @@ public abstract class AbstractGameObject {
     }
         
     /**
-     * Draws an object in the color of the light engine and with the lightlevel. Only draws if not hidden and not clipped.
+     * Draws an object in the color of the light engine and with the lightlevel. The point light of the cell at the position is added. Only draws if not hidden and not clipped.
      * @param pos the coordinates where the object should be rendered
      * @param view the view using this render method
      * @param camera The camera rendering the scene
      */
     public void render(View view, WECamera camera, AbstractPosition pos) {
-        Color color = Color.GRAY.cpy();
-        if (Controller.getLightengine() != null){
-                color = Controller.getLightengine().getGlobalLight();
-        }
-        render(view, camera, pos, color.mul(lightlevel));
+        render(
+            view,
+            camera,
+            pos,
+            LightPropagation.addPointLight(getRenderColor().mul(lightlevel), Controller.getMap().getPointLight(pos))
+        );
     }
     
      /**
@@ -143,11 +146,7 @@ public abstract class AbstractGameObject {
      * @param yPos rendering position
      */
     public void renderAt(View view, int xPos, int yPos) {
-        Color color = Color.GRAY.cpy();
-        if (Controller.getLightengine() != null){
-                color = Controller.getLightengine().getGlobalLight();
-        }
-        renderAt(view, xPos, yPos, color);
+        renderAt(view, xPos, yPos, getRenderColor());
     }
     
     /**
@@ -158,21 +157,49 @@ public abstract class AbstractGameObject {
      * @param color  custom blending color
      */
     public void renderAt(View view, int xPos, int yPos, Color color) {
-        Sprite sprite = new Sprite(getSprite(getCategory(), id, value));
-        sprite.setPosition(xPos, yPos);
-        
         prepareColor(view, color);
 
-        sprite.setColor(color);
-        sprite.draw(view.getBatch());
+        view.getBatch().setColor(color);
+        view.getBatch().draw(getSprite(getCategory(), id, value), xPos, yPos);
+    }
+    
+    /**
+     * Returns the global light of the light engine or gray if there is no light engine.
+     * The color is reused by the next call, so do not keep it.
+     * @return 
+     */
+    protected static Color getRenderColor(){
+        if (Controller.getLightengine() != null)
+            return Controller.getLightengine().getGlobalLight(renderColor);
+        return renderColor.set(Color.GRAY);
+    }
+    
+    /**
+     * Returns the light of a side of a block or gray if there is no light engine.
+     * The color is reused by the next call, so do not keep it.
+     * @param side 0 = left, 1 = top, 2 = right
+     * @return 
+     */
+    protected static Color getRenderColor(int side){
+        if (Controller.getLightengine() != null)
+            return Controller.getLightengine().getColorOfSide(side, renderColor);
+        return renderColor.set(Color.GRAY);
     }
     
     /**
      * Transform the color that it works with the blending mode which is also set in this method.
+     * With GL_MODULATE2X the color is used as it is, so the mode does not change between objects.
      * @param view
      * @param color a tint in which the sprite should be rendered
      */
     public void prepareColor(View view, Color color){
+        if (View.isModulate2x()) {
+            view.setDrawmode(View.GL_MODULATE2X);
+            color.clamp();
+            color.a = 1;
+            return;
+        }
+        
         float brightness = PseudoGrey.toFloat(color);
         //float brightness = (color.r+color.g+color.b)/3;
         
@@ -1,13 +1,16 @@
 package com.BombingGames.EngineCore.Gameobjects;
 
+import com.badlogic.gdx.utils.Pool.Poolable;
+
 /**
  *An entity wich is animated.
  * @author Benedikt
  */
-public class AnimatedEntity extends AbstractEntity implements Animatable {
+public class AnimatedEntity extends AbstractEntity implements Animatable, Poolable {
     private final int[] animationsduration;
     private int counter = 0;
     private boolean running;
+    private final boolean autostart;
     private final boolean loop;
     
    /**
@@ -22,9 +25,20 @@ public class AnimatedEntity extends AbstractEntity implements Animatable {
         super(id);
         this.animationsduration = animationsinformation;
         this.running = autostart;
+        this.autostart = autostart;
         this.loop = loop;
     }
     
+    /**
+     * Starts the animation from the beginning.
+     */
+    @Override
+    public void reset() {
+        super.reset();
+        counter = 0;
+        running = autostart;
+    }
+    
    /**
      * updates the entity and the animation.
      * @param delta the time wich has passed since last update
@@ -1,19 +1,23 @@
 package com.BombingGames.EngineCore.Gameobjects;
 
 import com.BombingGames.EngineCore.Controller;
+import com.BombingGames.EngineCore.LightEngine.LightPropagation;
 import com.BombingGames.EngineCore.Map.AbstractPosition;
+import com.BombingGames.EngineCore.Map.CellStorage;
 import com.BombingGames.EngineCore.Map.Coordinate;
+import com.BombingGames.EngineCore.Map.Map;
 import com.BombingGames.EngineCore.View;
 import com.BombingGames.EngineCore.WECamera;
 import com.badlogic.gdx.Application.ApplicationType;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.Color;
-import com.badlogic.gdx.graphics.g2d.Sprite;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.g2d.TextureAtlas.AtlasRegion;
 
 /**
- * A Block is a wonderful piece of information and a geometrical object.
+ * A Block is a wonderful piece of information and a geometrical object.<br>
+ * The map does not keep a block for every cell. Blocks without an own state are shared: every cell with the same id and value uses the same instance. Only blocks which need their own state (e.g. <i>Sea</i>) are created for every cell.
+ * The state of a single cell like the clipping and the lightlevel is stored in the map. A block which is read from a cell or created for a cell knows the cell and reads and writes this state there.
  * @author Benedikt Vogler
  */
 public class Block extends AbstractGameObject {
@@ -42,12 +46,15 @@ public class Block extends AbstractGameObject {
      */
     private static final Color[][] colorlist = new Color[OBJECTTYPESCOUNT][VALUESCOUNT];
     
+    /**The shared instances of the blocks without an own state. index={id}{value}*/
+    private static final Block[][] sharedInstances = new Block[OBJECTTYPESCOUNT][VALUESCOUNT];
     
     private boolean liquid;
     private boolean hasSides = true;
-    private boolean clippedRight = false;
-    private boolean clippedTop = false;
-    private boolean clippedLeft = false;
+    /**true if this instance is used by more than one cell. Shared instances can not be modified.*/
+    private boolean shared;
+    /**The cell of a block without an own state which was read from the map or created for a cell. The clipping and the lightlevel of this cell are used.*/
+    private Coordinate cell;
     
     static {
         NAMELIST[0] = "air";
@@ -110,18 +117,125 @@ public class Block extends AbstractGameObject {
     
     /**
      * Create a block through this factory method. If the block needs to know it's position you have to use this method and give the coordinates.
+     * The block can be modified. When it has coordinates, its clipping and lightlevel are the ones of the cell in the map.
      * @param id the id of the block
      * @param value the value of the block, which is like a sub-id
      * @param coords the coordinates where the block is going to be places. If the block does not need this information it can be null.
      * @return the Block
+     * @see #getSharedInstance(int, int) 
      */
     public static Block getInstance(int id, int value, Coordinate coords){
+        Block block = createInstance(id, value, coords);
+        if (!isStateful(id)) block.cell = coords;
+        return block;
+    }
+    
+    /**
+     * Returns the instance which is shared by every cell with this id and value. It is created only once, so use this when many blocks are read. The shared instance can not be modified and does not know a cell, so read the clipping and the lightlevel from the map.
+     * @param id the id of a block without an own state
+     * @param value the value of the block, which is like a sub-id
+     * @return the shared Block
+     * @see #isStateful(int) 
+     */
+    public static Block getSharedInstance(int id, int value){
+        if (isStateful(id))
+            throw new IllegalArgumentException("The block "+id+" has an own state and can not be shared.");
+        
+        Block block = sharedInstances[id][value];
+        if (block == null) {
+            block = createInstance(id, value, null);
+            block.shared = true;
+            sharedInstances[id][value] = block;
+        }
+        return block;
+    }
+    
+    /**
+     * Does a block need an own instance for every cell? This is the case when it changes itself or needs to know it's position.
+     * @param id the id of the block
+     * @return true if the block can not be shared
+     */
+    public static boolean isStateful(int id){
+        switch (id){
+            case 9: return Gdx.app.getType() != ApplicationType.Android;//Sea
+            case 40: //EntitySpawner
+            case 71: //ExplosiveBarrel
+            case 72: //AnimatedBlock
+                return true;
+            default: return false;
+        }
+    }
+    
+    /**
+     * How much light does a block emit? The light spreads to the neighbour cells and gets weaker with every cell.
+     * @param id the id of the block
+     * @return the level of the light in the cell of the block, 0 if it emits no light
+     * @see com.BombingGames.EngineCore.LightEngine.LightPropagation
+     */
+    public static int getLightEmission(int id){
+        switch (id){
+            case 70: return 10;//campfire
+            default: return 0;
+        }
+    }
+    
+    /**
+     * Is a block with this id a true block with sides or represents it another thing like a flower?
+     * This only depends on the id, so it can be read without creating the block, e.g. by the threads of the raytracing.
+     * @param id the id of the block
+     * @return 
+     */
+    public static boolean hasSides(int id){
+        switch (id){
+            case 34: //flower
+            case 35: //bush
+            case 70: //campfire
+            case 71: //ExplosiveBarrel
+                return false;
+            default: return true;
+        }
+    }
+    
+    /**
+     * Has a block with this id transparent areas? This only depends on the id, so it can be read without creating the block.
+     * @param id the id of the block
+     * @return 
+     */
+    public static boolean isTransparent(int id){
+        switch (id){
+            case 1: case 2: case 3: case 4: case 5: case 6: case 7: case 8:
+            case 20:
+            case 40: //EntitySpawner
+            case 44: //textureless
+            case 71: //ExplosiveBarrel
+            case 72: //AnimatedBlock
+                return false;
+            default: return true;
+        }
+    }
+    
+    /**
+     * Is a block with this id liquid? This only depends on the id, so it can be read without creating the block.
+     * @param id the id of the block
+     * @return 
+     */
+    public static boolean isLiquid(int id){
+        return id == 9;
+    }
+    
+    /**
+     * Creates a new instance of a block.
+     * @param id the id of the block
+     * @param value the value of the block
+     * @param coords the coordinates. Only needed by stateful blocks.
+     * @return the new block
+     */
+    private static Block createInstance(int id, int value, Coordinate coords){
         Block block;
         //define the default SideSprites
         switch (id){
             case 0: 
                     block = new Block(id);//air
-                    block.setTransparent(true);
                     block.setHidden(true);
                     break;
             case 1: block = new Block(id); //grass
@@ -131,7 +245,6 @@ public class Block extends AbstractGameObject {
                     block.setObstacle(true);
                     break;
             case 3: block = new Block(id); 
-                    block.setTransparent(false);
                     block.setObstacle(true);
                     break;
             case 4: block = new Block(id); 
@@ -153,43 +266,33 @@ public class Block extends AbstractGameObject {
                     block = new Block(id); //static water
                     else
                     block = new Sea(id, coords); //Sea
-                    block.liquid = true;
-                    block.setTransparent(true);
                     break;
             case 20: block = new Block(id);
                     block.setObstacle(true);
                     break;
             case 34: block = new Block(id); //flower
-                    block.setTransparent(true);
-                    block.hasSides = false;
                     break;
             case 35: block = new Block(id); //bush
-                    block.setTransparent(true);
-                    block.hasSides = false;
                     break;     
             case 40: block = new EntitySpawner(id, coords);
-                    block.hasSides = true;
                     break;
             case 44: block = new Block(id); //textureless
-                    block.hasSides = true;
                     block.setObstacle(true);
                     break;      
             case 70:block = new Block(id); 
-                    block.setTransparent(true);
-                    block.hasSides = false;
                     break;
             case 71:block = new ExplosiveBarrel(id, coords);
-                    block.hasSides = false;
                     break;
             case 72:block = new AnimatedBlock(id, new int[]{1000,1000},true, true);//animation lighting
                     block.setObstacle(true);
-                    block.hasSides = true;
                     break;
             default:
                     block = new Block(id); 
-                    block.setTransparent(true);
                     break; 
         }
+        block.setTransparent(isTransparent(id));
+        block.hasSides = hasSides(id);
+        block.liquid = isLiquid(id);
         block.setValue(value);
         return block;
     }  
@@ -233,7 +336,7 @@ public class Block extends AbstractGameObject {
             colorlist[id][value] = new Color();
             int colorInt;
             
-            if (Block.getInstance(id,value, new Coordinate(0,0,0,false)).hasSides){    
+            if (hasSides(id)){    
                 AtlasRegion texture = getBlockSprite(id, value, 1);
                 if (texture == null) return new Color();
                 colorInt = getPixmap().getPixel(
@@ -265,67 +368,183 @@ public class Block extends AbstractGameObject {
         return hasSides;
     } 
     
-        /**
-     * 
-     * @param clipped When it is set to false, every side will also get clipped..
+    /**
+     * Does this block need an update every frame? This is the case for blocks which know their position or are animated.
+     * @return true if <i>update</i> must be called
+     */
+    public boolean isTickable() {
+        return this instanceof IsSelfAware || this instanceof Animatable;
+    }
+    
+    /**
+     * Is this instance used by more than one cell?
+     * @return true if shared
      */
+    public boolean isShared() {
+        return shared;
+    }
+    
+    /**
+     * Checks if the block may be modified.
+     * @throws UnsupportedOperationException if the block is shared
+     */
+    private void checkShared(){
+        if (shared) throw new UnsupportedOperationException("The block "+getName()+" is shared and can not be modified.");
+    }
+
+    /**
+     * The properties of a block are stored in the block. When a block which was read from a cell is changed, it becomes the own block of the cell, so the change stays in the map.
+     */
+    private void store(){
+        if (cell == null || Controller.getMap() == null) return;
+        Map map = Controller.getMap();
+        int index = map.index(cell.getRelX(), cell.getRelY(), cell.getZ());
+        //the cell got another block since this block was read
+        if (map.getData().getId(index) != getId() || map.getData().getValue(index) != getValue()) return;
+        map.getData().setOwnBlock(index, this);
+    }
+
     @Override
-    public void setClipped(boolean clipped) {
-        super.setClipped(clipped);
-        if (clipped) {
-            clippedLeft = true;
-            clippedTop = true;
-            clippedRight = true;
+    public void setObstacle(boolean obstacle) {
+        checkShared();
+        super.setObstacle(obstacle);
+        store();
+    }
+
+    @Override
+    public void setTransparent(boolean transparent) {
+        checkShared();
+        super.setTransparent(transparent);
+        store();
+    }
+
+    @Override
+    public void setHidden(boolean hidden) {
+        checkShared();
+        super.setHidden(hidden);
+        store();
+    }
+
+    @Override
+    public void setDimensionZ(int dimensionZ) {
+        checkShared();
+        super.setDimensionZ(dimensionZ);
+        store();
+    }
+    
+    /**
+     * The cell of the block.
+     * @return null if the block does not know its cell
+     */
+    private Coordinate getCell(){
+        if (cell != null) return cell;
+        if (this instanceof IsSelfAware) {
+            AbstractPosition pos = ((IsSelfAware) this).getPos();
+            if (pos != null) return pos.getCoord();
         }
+        return null;
     }
     
     /**
-     * Make a side (in)clipping. If one side is clipping, the whole block is clipping.
-     * @param side 0 = left, 1 = top, 2 = right
-     * @param clipping true when it should be clipped.
+     * The clipping of a block is stored in the map. Blocks which know their cell read the clipping of their cell.
+     * @return 
      */
-    public void setSideClipping(int side, boolean clipping) {
-        if (!clipping) this.setClipped(false);
-        
-        if (side==0)
-            clippedLeft = clipping;
-        else if (side==1)
-            clippedTop = clipping;
-                else if (side==2)
-                    clippedRight = clipping;
+    @Override
+    public boolean isClipped() {
+        Coordinate cell = getCell();
+        if (cell != null)
+            return Controller.getMap().isClipped(cell.getRelX(), cell.getRelY(), cell.getZ());
+        return super.isClipped();
     }
     
+    /**
+     * The clipping of a block is stored in the map. Blocks which know their cell set the clipping of their cell.
+     * @param clipped
+     * @throws UnsupportedOperationException if the block is the shared instance. Use <i>Map.setClipped</i> instead.
+     */
+    @Override
+    public void setClipped(boolean clipped) {
+        checkShared();
+        Coordinate cell = getCell();
+        if (cell != null)
+            Controller.getMap().setClipped(cell.getRelX(), cell.getRelY(), cell.getZ(), clipped);
+        else
+            super.setClipped(clipped);
+    }
+
+    /**
+     * The lightlevel of a block is stored in the map. Blocks which know their cell read the lightlevel of their cell.
+     * @return 
+     */
+    @Override
+    public float getLightlevel() {
+        Coordinate cell = getCell();
+        if (cell != null)
+            return Controller.getMap().getLightlevel(cell);
+        return super.getLightlevel();
+    }
+    
+    /**
+     * The lightlevel of a block is stored in the map. Blocks which know their cell set the lightlevel of their cell.
+     * @param lightlevel
+     * @throws UnsupportedOperationException if the block is the shared instance. Use <i>Map.setLightlevel</i> instead.
+     */
+    @Override
+    public void setLightlevel(float lightlevel) {
+        checkShared();
+        Coordinate cell = getCell();
+        if (cell != null)
+            Controller.getMap().setLightlevel(cell.getRelX(), cell.getRelY(), cell.getZ(), lightlevel);
+        else
+            super.setLightlevel(lightlevel);
+    }
+    
+    /**
+     * Renders the block with the clipping, the lightlevel and the point light of the cell at the coordinates.
+     * @param view the view using this render method
+     * @param camera The camera rendering the scene
+     * @param coords the coordinates of the cell
+     */
     @Override
     public void render(final View view, final WECamera camera, AbstractPosition coords) {
-        if (!isClipped() && !isHidden()) {
+        byte clipping = Controller.getMap().getClipping(coords.getCoord());
+        if ((clipping & CellStorage.CLIPPED) == 0 && !isHidden()) {
             if (hasSides) {
-                if (!clippedTop)
+                if ((clipping & 1 << TOPSIDE) == 0)
                     renderSide(view, camera, coords, Block.TOPSIDE);
-                if (!clippedLeft)
+                if ((clipping & 1 << LEFTSIDE) == 0)
                     renderSide(view, camera, coords, Block.LEFTSIDE);
-                if (!clippedRight)
+                if ((clipping & 1 << RIGHTSIDE) == 0)
                     renderSide(view, camera, coords, Block.RIGHTSIDE);
-            } else super.render(view, camera, coords);
+            } else {
+                Coordinate coord = coords.getCoord();
+                super.render(
+                    view,
+                    camera,
+                    coords,
+                    LightPropagation.addPointLight(
+                        getRenderColor().mul(Controller.getMap().getLightlevel(coord)),
+                        Controller.getMap().getPointLight(coord)
+                    )
+                );
+            }
         }
     }
     
     /**
-     * Render the whole block at a custom position and checks for clipping and hidden.
+     * Render the whole block at a custom position and checks for hidden. Every side is rendered.
      * @param view the view using this render method
      * @param xPos rendering position
      * @param yPos rendering position
      */
     @Override
     public void renderAt(final View view, int xPos, int yPos) {
-        if (!isClipped() && !isHidden()) {
+        if (!isHidden()) {
             if (hasSides) {
-                if (!clippedTop)
-                    renderSideAt(view, xPos, yPos, Block.TOPSIDE);
-                if (!clippedLeft)
-                    renderSideAt(view, xPos, yPos+SCREEN_WIDTH4, Block.LEFTSIDE);
-                if (!clippedRight)
-                    renderSideAt(view, xPos+SCREEN_WIDTH2, yPos+SCREEN_WIDTH4, Block.RIGHTSIDE);
-                } else super.renderAt(view, xPos, yPos);
+                renderSideAt(view, xPos, yPos, Block.TOPSIDE);
+                renderSideAt(view, xPos, yPos+SCREEN_WIDTH4, Block.LEFTSIDE);
+                renderSideAt(view, xPos+SCREEN_WIDTH2, yPos+SCREEN_WIDTH4, Block.RIGHTSIDE);
+            } else super.renderAt(view, xPos, yPos);
         }
     }
 
@@ -344,22 +563,19 @@ public class Block extends AbstractGameObject {
      * @param scale the scale of the image
      */
     public void renderAt(View view, int xPos, int yPos, Color color, boolean shade, float scale) {
-        if (!isClipped() && !isHidden()) {
+        if (!isHidden()) {
             if (hasSides) {
-                if (!clippedTop)
-                    renderSideAt(view, xPos, yPos, Block.TOPSIDE, color, scale);
+                renderSideAt(view, xPos, yPos, Block.TOPSIDE, color, scale);
                if (shade) {
-                   color = color.add(Color.DARK_GRAY.cpy());
+                   color = color.add(Color.DARK_GRAY);
                    color.clamp();
                }
-                if (!clippedLeft)
-                    renderSideAt(view, xPos, (int) (yPos+SCREEN_WIDTH4*(1+scale)), Block.LEFTSIDE, color, scale);
+                renderSideAt(view, xPos, (int) (yPos+SCREEN_WIDTH4*(1+scale)), Block.LEFTSIDE, color, scale);
                 if (shade) {
-                    color = color.sub(Color.DARK_GRAY.cpy());
+                    color = color.sub(Color.DARK_GRAY);
                     color.clamp();
                 }
-                if (!clippedRight)
-                    renderSideAt(view, (int) (xPos+SCREEN_WIDTH2*(1+scale)), (int) (yPos+SCREEN_WIDTH4*(1+scale)), Block.RIGHTSIDE, color, scale);
+                renderSideAt(view, (int) (xPos+SCREEN_WIDTH2*(1+scale)), (int) (yPos+SCREEN_WIDTH4*(1+scale)), Block.RIGHTSIDE, color, scale);
             } else super.renderAt(view, xPos, yPos, color);
         }
     }
@@ -372,15 +588,11 @@ public class Block extends AbstractGameObject {
      * @param sidenumb The number identifying the side. 0=left, 1=top, 2=right
      */
     public void renderSide(final View view, final WECamera camera, AbstractPosition coords, final int sidenumb){
-        Color color;
-        if (Controller.getLightengine() != null){
-            color = Controller.getLightengine().getColorOfSide(sidenumb);
-        } else color = Color.GRAY.cpy();
-        renderSide(view, camera, coords, sidenumb, color);
+        renderSide(view, camera, coords, sidenumb, getRenderColor(sidenumb));
     }
 
     /**
-     * Render a side of a block at the position of the coordinates.
+     * Render a side of a block at the position of the coordinates. Takes the lightlevel of the cell and the point light falling on the side into account.
      * @param view the view using this render method
      * @param camera The camera rendering the scene
      * @param coords the coordinates where to render 
@@ -395,6 +607,9 @@ public class Block extends AbstractGameObject {
 //            /
 //            (float)(camera.getBottomBorder()-camera.getTopBorder())
 //            );
+        Coordinate coord = coords.getCoord();
+        color.mul(Controller.getMap().getLightlevel(coord)*2);
+        LightPropagation.addPointLight(color, Controller.getMap().getPointLight(coord, sidenumb));
         renderSideAt(view, xPos, yPos, sidenumb, color, 0);
     }
     
@@ -406,14 +621,10 @@ public class Block extends AbstractGameObject {
      * @param sidenumb The number identifying the side. 0=left, 1=top, 2=right
      */
     public void renderSideAt(final View view, int xPos, int yPos, final int sidenumb){
-        Color color;
-        if (Controller.getLightengine() != null){
-            color = Controller.getLightengine().getColorOfSide(sidenumb);
-        } else color = Color.GRAY.cpy();
-        renderSideAt(view, xPos, yPos, sidenumb, color, 0);
+        renderSideAt(view, xPos, yPos, sidenumb, getRenderColor(sidenumb), 0);
     }
     /**
-     * Draws a side of a block at a custom position. Apllies color before rendering and takes the lightlevel into account.
+     * Draws a side of a block at a custom position. Apllies color before rendering. The lightlevel is ignored.
      * @param view the view using this render method
      * @param xPos rendering position
      * @param yPos rendering position
@@ -422,40 +633,17 @@ public class Block extends AbstractGameObject {
      * @param scale if you want to scale it up use scale > 0 else < 0
      */
     public void renderSideAt(final View view, int xPos, int yPos, final int sidenumb, Color color, float scale){
-        Sprite sprite = new Sprite(getBlockSprite(getId(), getValue(), sidenumb));
-        sprite.setPosition(xPos, yPos);
-        if (scale != 0) {
-            sprite.setOrigin(0, 0);
-            sprite.scale(scale);
-        }
-        
-        color.mul(getLightlevel()*2);
+        AtlasRegion region = getBlockSprite(getId(), getValue(), sidenumb);
         
         prepareColor(view, color);
         
-        sprite.getVertices()[SpriteBatch.C4] = color.toFloatBits();//top right
-        
-        //color.mul(getLightlevel()*2-((sidenumb == 2)?0.01f:0));
-        //color.a = 1; 
-        sprite.getVertices()[SpriteBatch.C1] = color.toFloatBits();//top left
-
-        
-//        if (sidenumb == 2)
-//            color.mul(0.93f);
-//        else if (sidenumb == 0)
-//            color.mul(0.92f);
-//        color.a = 1; 
-
-        sprite.getVertices()[SpriteBatch.C2] = color.toFloatBits();//bottom left
-        
-//        if (sidenumb == 2)
-//            color.mul(0.97f);
-//        else if (sidenumb == 0) color.mul(1);
-//        color.a = 1; 
-        sprite.getVertices()[SpriteBatch.C3] = color.toFloatBits();//bottom right
- 
-        sprite.draw(view.getBatch());
-    
+        //every corner has the same color, so the region can be drawn directly without a sprite
+        SpriteBatch batch = view.getBatch();
+        batch.setColor(color);
+        if (scale != 0)
+            batch.draw(region, xPos, yPos, 0, 0, region.getRegionWidth(), region.getRegionHeight(), 1+scale, 1+scale, 0);
+        else
+            batch.draw(region, xPos, yPos);
     }
 
     @Override
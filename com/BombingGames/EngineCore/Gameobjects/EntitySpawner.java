@@ -4,7 +4,7 @@ import com.BombingGames.EngineCore.Controller;
 import com.BombingGames.EngineCore.GameplayScreen;
 import com.BombingGames.EngineCore.Map.AbstractPosition;
 import com.BombingGames.EngineCore.Map.Coordinate;
-import java.util.ArrayList;
+import com.badlogic.gdx.utils.Array;
 import java.util.Arrays;
 
 /**
@@ -14,6 +14,8 @@ import java.util.Arrays;
 public class EntitySpawner extends Block implements IsSelfAware {
     private Coordinate coords;//this field is needed because of it is selfAware
     private boolean up = true;
+    /**Reused for the entitys near the spawner.*/
+    private final Array<AbstractEntity> nearEntitys = new Array<AbstractEntity>(false, 8);
 
     /**
      *
@@ -30,19 +32,20 @@ public class EntitySpawner extends Block implements IsSelfAware {
 
     @Override
     public void update(float delta) {
-        int[] coordsOnTop = coords.cpy().addVector(new float[]{0, 0, 1}).getCoord().getRel();
+        Coordinate top = coords.cpy().addVector(new float[]{0, 0, 1});
+        int[] coordsOnTop = top.getRel();
         
-        //get every character
-        ArrayList<AbstractCharacter> entitylist;
-        entitylist = Controller.getMap().getAllEntitysOfType(AbstractCharacter.class);
+        //get the entitys near the top
+        nearEntitys.clear();
+        Controller.getMap().getEntityGrid().queryRadius(top.getPoint(), 2*GAME_DIAGSIZE, nearEntitys);
         
         //check every character if standing on top
         int i = 0;
-        while (i < entitylist.size() && !Arrays.equals( entitylist.get(i).getPos().getCoord().getRel(), coordsOnTop)){
+        while (i < nearEntitys.size && !isStandingOnTop(nearEntitys.get(i), coordsOnTop)){
             i++;
         }
         
-        if (i < entitylist.size() && Arrays.equals(entitylist.get(i).getPos().getCoord().getRel(), coordsOnTop)) {
+        if (i < nearEntitys.size) {
             if (up) trigger();
             up = false;
         } else {
@@ -50,6 +53,16 @@ public class EntitySpawner extends Block implements IsSelfAware {
         }
     }
 
+    /**
+     * Is an entity a character in the cell on top of the spawner?
+     * @param entity
+     * @param coordsOnTop the relative position of the cell on top
+     * @return 
+     */
+    private static boolean isStandingOnTop(AbstractEntity entity, int[] coordsOnTop){
+        return entity instanceof AbstractCharacter && Arrays.equals(entity.getPos().getCoord().getRel(), coordsOnTop);
+    }
+
     @Override
     public AbstractPosition getPos() {
         return coords;
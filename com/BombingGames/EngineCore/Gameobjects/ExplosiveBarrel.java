@@ -26,23 +26,16 @@ public class ExplosiveBarrel extends Block implements IsSelfAware {
         if (coords == null) throw new NullPointerException("No coordinates given to ExplosiveBarrel during creation."); 
         this.coords = coords;
         setObstacle(true);
-        if (explosionsound == null) explosionsound = Gdx.audio.newSound(Gdx.files.internal("com/BombingGames/Game/Sounds/explosion2.ogg"));
     }
     
     /**
      * Explodes the barrel.
      */
     public void explode(){
-        for (int x=-RADIUS; x<RADIUS; x++)
-            for (int y=-RADIUS*2; y<RADIUS*2; y++)
-                for (int z=-RADIUS; z<RADIUS; z++){
-                    //place air
-                     if (x*x + (y/2)*(y/2)+ z*z < RADIUS*RADIUS){
-                        Controller.getMap().setDataSafe(
-                            coords.cpy().addVector(new float[]{x, y, z}).getCoord() , Block.getInstance(0)
-                        );
-                     }
-                }
+        //place air
+        Controller.getMap().edit()
+            .sphere(coords.getRelX(), coords.getRelY(), coords.getZ(), RADIUS, 0, 0)
+            .commit();
         
          for (int x=-RADIUS; x<RADIUS; x++)
             for (int y=-RADIUS*2; y<RADIUS*2; y++)
@@ -54,12 +47,13 @@ public class ExplosiveBarrel extends Block implements IsSelfAware {
                         AbstractEntity.getInstance(
                             41,
                             0,
-                            coords.cpy().addVector(new float[]{x, y, z}).getPoint()
+                            new Coordinate(coords.getRelX()+x, coords.getRelY()+y, coords.getZ()+z, true).getPoint()
                         ).exist();
                     }
                 }
+         //the sound is loaded here because barrels can be created by a worker thread
+         if (explosionsound == null) explosionsound = Gdx.audio.newSound(Gdx.files.internal("com/BombingGames/Game/Sounds/explosion2.ogg"));
          explosionsound.play();
-         Controller.requestRecalc();
     }
 
     @Override
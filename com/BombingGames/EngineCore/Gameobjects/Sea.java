@@ -30,7 +30,8 @@ public class Sea extends Block implements IsSelfAware{
         if (coords == null) throw new NullPointerException("No coordinates given to Sea-Block during creation."); 
         
         this.coords = coords;
-        startvalue = (float) (coords.getCellOffset()[2] + Math.random()*WAVE_AMPLITUDE - WAVE_AMPLITUDE);
+        //the offset is not read from the map because the block may be created by a worker thread before it is inserted
+        startvalue = (float) (Math.random()*WAVE_AMPLITUDE - WAVE_AMPLITUDE);
        
     }
 
@@ -1,13 +1,16 @@
 package com.BombingGames.EngineCore.LightEngine;
 
 import com.BombingGames.EngineCore.Controller;
-import com.BombingGames.EngineCore.Map.Chunk;
+import com.BombingGames.EngineCore.Map.CellStorage;
+import com.BombingGames.EngineCore.Map.DirtyRegion;
 import com.BombingGames.EngineCore.Map.Map;
 import com.BombingGames.EngineCore.View;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
 import com.badlogic.gdx.graphics.glutils.ShapeRenderer.ShapeType;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntSet;
 
 
 /**
@@ -21,6 +24,10 @@ public class LightEngine {
     public static final String Version = "1.1.2";
     
     private boolean renderData = false;
+    /**The columns which were relit by the last calculation of the simple light. Reused.*/
+    private static final IntSet relitColumns = new IntSet();
+    /**The highest solid block of every column when it was lit, indexed by the index of its bottom cell / blocksZ. The storage is not moved by a chunk switch, so the indices stay valid.*/
+    private static int[] litTops;
     //diagramm data
     private int posX = 250;
     private int posY = 250;
@@ -154,9 +161,20 @@ public class LightEngine {
      * @return a color on the (pseudo) greyscale
      */
     public Color getColorOfSide(int side){
-        if (side==0) return getGlobalLight().mul(I_0);
-            else if (side==1) return getGlobalLight().mul(I_1);
-                else return getGlobalLight().mul(I_2);
+        return getColorOfSide(side, new Color());
+    }
+    
+    /**
+     * Writes the light of a side into an existing color, so no new color is created.
+     * @param side
+     * @param result the color where the light is written to
+     * @return the result
+     */
+    public Color getColorOfSide(int side, Color result){
+        getGlobalLight(result);
+        if (side==0) return result.mul(I_0);
+            else if (side==1) return result.mul(I_1);
+                else return result.mul(I_2);
     }
     
     /**
@@ -164,30 +182,100 @@ public class LightEngine {
      * @return a color with a tone
      */
     public Color getGlobalLight(){
-        return sun.getLight().cpy().add(moon.getLight());
+        return getGlobalLight(new Color());
+    }
+    
+    /**
+     * Writes the sum of every light into an existing color, so no new color is created.
+     * @param result the color where the light is written to
+     * @return the result
+     */
+    public Color getGlobalLight(Color result){
+        return result.set(sun.getLight()).add(moon.getLight());
     }
     
      /**
-     * Calculates the light level based on the sun shining straight from the top
+     * Calculates the light level based on the sun shining straight from the top. Every column of the map is calculated, so use this only when the map was loaded.
      */
     public static void calcSimpleLight(){
+        Map map = Controller.getMap();
+        checkLitTops();
         for (int x=0; x < Map.getBlocksX(); x++){
             for (int y=0; y < Map.getBlocksY(); y++) {
-                //find top most renderobject
-                int topmost = Chunk.getBlocksZ()-1;//start at top
-                while (Controller.getMap().getBlock(x,y,topmost).isTransparent() && topmost > 0 ){
-                    topmost--;
-                }
-                
-                if (topmost>0) {
-                    //start at topmost renderobject and go down. Every step make it a bit darker
-                    for (int level = topmost; level >= 0; level--){
-                        Controller.getMap().getBlock(x,y,level).setLightlevel(.25f + .25f*level / (float) topmost);
-                    }
-                }
+                calcSimpleLight(map.getData(), map.index(x, y, 0));
             }
         }         
     }
+    
+    /**
+     * Calculates the simple light only for the columns which changed. Every column is relit once and only if its highest solid block changed. The other changed cells only get the light level of their height again, because setting a block resets it.
+     * @param region the changes since the last calculation
+     */
+    public static void calcSimpleLight(DirtyRegion region){
+        Map map = Controller.getMap();
+        CellStorage data = map.getData();
+        checkLitTops();
+        relitColumns.clear();
+        
+        //whole columns changed, e.g. by a new chunk
+        IntArray columns = region.getColumns();
+        for (int i = 0; i < columns.size; i++) {
+            if (relitColumns.add(columns.get(i)))
+                calcSimpleLight(data, columns.get(i));
+        }
+        
+        IntArray cells = region.getCells();
+        for (int i = 0; i < cells.size; i++) {
+            int index = cells.get(i);
+            int bottom = index - index % Map.getBlocksZ();
+            if (relitColumns.contains(bottom)) continue;
+            int topmost = data.getTopSolid(bottom);
+            if (topmost != litTops[bottom / Map.getBlocksZ()]) {
+                relitColumns.add(bottom);
+                calcSimpleLight(data, bottom);
+            } else
+                data.setLightlevel(index, getSimpleLightlevel(index % Map.getBlocksZ(), topmost));
+        }
+    }
+    
+    /**
+     * Creates the highest solid blocks of the columns when they do not fit the map. Unknown columns are always relit.
+     */
+    private static void checkLitTops(){
+        int size = Map.getBlocksX()*Map.getBlocksY();
+        if (litTops == null || litTops.length != size) {
+            litTops = new int[size];
+            java.util.Arrays.fill(litTops, Integer.MIN_VALUE);
+        }
+    }
+    
+    /**
+     * Calculates the simple light of a single column. The cells above the highest block which is not transparent keep the default light level.
+     * @param data
+     * @param bottom the index of the bottom cell of the column in the storage
+     */
+    private static void calcSimpleLight(CellStorage data, int bottom){
+        //find top most renderobject
+        int topmost = data.getTopSolid(bottom);
+        litTops[bottom / Map.getBlocksZ()] = topmost;
+
+        //start at topmost renderobject and go down. Every step make it a bit darker
+        for (int level = Map.getBlocksZ()-1; level >= 0; level--){
+            data.setLightlevel(bottom+level, getSimpleLightlevel(level, topmost));
+        }
+    }
+    
+    /**
+     * The simple light level of a cell.
+     * @param level the height of the cell
+     * @param topmost the highest solid block of the column
+     * @return 
+     */
+    private static float getSimpleLightlevel(int level, int topmost){
+        if (topmost > 0 && level <= topmost)
+            return .25f + .25f*level / (float) topmost;
+        return CellStorage.DEFAULTLIGHTLEVEL;
+    }
 
     /**
      *
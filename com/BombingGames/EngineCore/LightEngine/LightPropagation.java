@@ -0,0 +1,238 @@
+package com.BombingGames.EngineCore.LightEngine;
+
+import com.BombingGames.EngineCore.Controller;
+import com.BombingGames.EngineCore.Gameobjects.Block;
+import com.BombingGames.EngineCore.Map.CellStorage;
+import com.BombingGames.EngineCore.Map.DirtyRegion;
+import com.BombingGames.EngineCore.Map.Map;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ *Spreads the light of blocks which emit light (e.g. the campfire) through the map. The light is a level per cell which gets weaker by one with every cell. Blocks which are not transparent stop the light.<br>
+ * The light is spread with a flood fill. When a cell changes only the light around it is calculated again: the old light is removed with a second flood fill and the cells at its border spread their light back into the gap.
+ * @author Benedikt Vogler
+ */
+public class LightPropagation {
+    /**The highest light level of a cell.*/
+    public static final int MAXLEVEL = 15;
+    /**The color of the light at the highest level.*/
+    private static final Color LIGHTCOLOR = new Color(1f, .6f, .2f, 1);
+
+    /**The cells which spread their light.*/
+    private static final IntArray addQueue = new IntArray();
+    /**The cells whose light is removed as index &lt;&lt; 4 | old level.*/
+    private static final IntArray removeQueue = new IntArray();
+    /**The cells emitting light which were reached by a removal.*/
+    private static final IntArray sources = new IntArray();
+    /**Reused for the neighbours of a cell.*/
+    private static final int[] neighbours = new int[6];
+    private static final int[] relativePosition = new int[3];
+
+    /**
+     * Calculates the light of every cell of the map. Use this only when the map was loaded.
+     */
+    public static void calcPointLights(){
+        Map map = Controller.getMap();
+        CellStorage data = map.getData();
+        for (int x = 0; x < Map.getBlocksX(); x++) {
+            for (int y = 0; y < Map.getBlocksY(); y++) {
+                for (int z = 0; z < Map.getBlocksZ(); z++) {
+                    int index = map.index(x, y, z);
+                    data.setPointLight(index, 0);
+                    addSource(data, index);
+                }
+            }
+        }
+        sources.clear();
+        spread(map, data);
+    }
+    
+    /**
+     * Removes the light of every cell in a rectangle and the light which was spread through them. Call this before the cells are overwritten without their light (e.g. when the chunks are moved) while they are still next to their neighbours.
+     * The light around the rectangle is spread again by the next <i>calcPointLights(DirtyRegion)</i>, which has to contain the overwritten cells.
+     * @param map
+     * @param fromX relative position of the first column
+     * @param toX relative position after the last column
+     * @param fromY relative position of the first row
+     * @param toY relative position after the last row
+     */
+    public static void removePointLights(Map map, int fromX, int toX, int fromY, int toY){
+        CellStorage data = map.getData();
+        for (int x = fromX; x < toX; x++) {
+            for (int y = fromY; y < toY; y++) {
+                for (int z = 0; z < Map.getBlocksZ(); z++)
+                    removeLight(data, map.index(x, y, z));
+            }
+        }
+        remove(map, data);
+    }
+
+    /**
+     * Calculates the light only around the cells which changed.
+     * @param region the changes since the last calculation
+     */
+    public static void calcPointLights(DirtyRegion region){
+        Map map = Controller.getMap();
+        CellStorage data = map.getData();
+        IntArray cells = region.getCells();
+        IntArray columns = region.getColumns();
+
+        //remove the old light of the changed cells and every light which came through them
+        for (int i = 0; i < cells.size; i++)
+            removeLight(data, cells.get(i));
+        for (int i = 0; i < columns.size; i++) {
+            for (int z = 0; z < Map.getBlocksZ(); z++)
+                removeLight(data, columns.get(i)+z);
+        }
+        remove(map, data);
+
+        //fill the gaps again
+        for (int i = 0; i < sources.size; i++)
+            addSource(data, sources.get(i));
+        sources.clear();
+        for (int i = 0; i < cells.size; i++)
+            addLight(map, data, cells.get(i));
+        for (int i = 0; i < columns.size; i++) {
+            for (int z = 0; z < Map.getBlocksZ(); z++)
+                addLight(map, data, columns.get(i)+z);
+        }
+        spread(map, data);
+    }
+
+    /**
+     * Removes the light of a cell and queues it for the removal of the light spread by it.
+     * @param data
+     * @param index the linear index
+     */
+    private static void removeLight(CellStorage data, int index){
+        int level = data.getPointLight(index);
+        if (level > 0) {
+            data.setPointLight(index, 0);
+            removeQueue.add(index << 4 | level);
+        }
+    }
+
+    /**
+     * Queues the light of a changed cell: the light it emits and the light coming from its neighbours.
+     * @param map
+     * @param data
+     * @param index the linear index
+     */
+    private static void addLight(Map map, CellStorage data, int index){
+        if (!data.isTransparent(index)) return;
+        addSource(data, index);
+        int count = getNeighbours(map, index);
+        for (int i = 0; i < count; i++) {
+            if (data.getPointLight(neighbours[i]) > 1) addQueue.add(neighbours[i]);
+        }
+    }
+
+    /**
+     * Sets the light of a cell emitting light and queues it for spreading.
+     * @param data
+     * @param index the linear index
+     */
+    private static void addSource(CellStorage data, int index){
+        int emission = Block.getLightEmission(data.getId(index));
+        if (emission > data.getPointLight(index)) {
+            data.setPointLight(index, emission);
+            addQueue.add(index);
+        }
+    }
+
+    /**
+     * Spreads the light of every queued cell. Every cell gets the level of the brightest neighbour minus one.
+     * @param map
+     * @param data
+     */
+    private static void spread(Map map, CellStorage data){
+        for (int head = 0; head < addQueue.size; head++) {
+            int index = addQueue.get(head);
+            int level = data.getPointLight(index) - 1;
+            if (level <= 0) continue;
+
+            int count = getNeighbours(map, index);
+            for (int i = 0; i < count; i++) {
+                int neighbour = neighbours[i];
+                if (data.getPointLight(neighbour) < level && data.isTransparent(neighbour)) {
+                    data.setPointLight(neighbour, level);
+                    addQueue.add(neighbour);
+                }
+            }
+        }
+        addQueue.clear();
+    }
+
+    /**
+     * Removes the light which was spread by the queued cells. Neighbours which are brighter got their light from somewhere else, so they are queued to spread it again.
+     * @param map
+     * @param data
+     */
+    private static void remove(Map map, CellStorage data){
+        for (int head = 0; head < removeQueue.size; head++) {
+            int index = removeQueue.get(head) >>> 4;
+            int level = removeQueue.get(head) & 15;
+
+            int count = getNeighbours(map, index);
+            for (int i = 0; i < count; i++) {
+                int neighbour = neighbours[i];
+                int neighbourLevel = data.getPointLight(neighbour);
+                if (neighbourLevel != 0 && neighbourLevel < level) {
+                    data.setPointLight(neighbour, 0);
+                    removeQueue.add(neighbour << 4 | neighbourLevel);
+                    if (Block.getLightEmission(data.getId(neighbour)) > 0) sources.add(neighbour);
+                } else if (neighbourLevel >= level) {
+                    addQueue.add(neighbour);
+                }
+            }
+        }
+        removeQueue.clear();
+    }
+
+    /**
+     * Finds the cells touching a cell: the cells above and below and the four cells whose sides touch it.
+     * @param map
+     * @param index the linear index
+     * @return the amount of neighbours written into <i>neighbours</i>. Cells outside the map are skipped.
+     */
+    private static int getNeighbours(Map map, int index){
+        map.getRelativePosition(index, relativePosition);
+        int x = relativePosition[0];
+        int y = relativePosition[1];
+        int z = relativePosition[2];
+        int count = 0;
+
+        if (z > 0) neighbours[count++] = index-1;
+        if (z < Map.getBlocksZ()-1) neighbours[count++] = index+1;
+
+        //odd rows are shifted to the right
+        int left = x - (y % 2 == 0 ? 1 : 0);
+        int right = x + (y % 2 == 0 ? 0 : 1);
+        if (y > 0) {
+            if (left >= 0) neighbours[count++] = map.index(left, y-1, z);
+            if (right < Map.getBlocksX()) neighbours[count++] = map.index(right, y-1, z);
+        }
+        if (y < Map.getBlocksY()-1) {
+            if (left >= 0) neighbours[count++] = map.index(left, y+1, z);
+            if (right < Map.getBlocksX()) neighbours[count++] = map.index(right, y+1, z);
+        }
+        return count;
+    }
+
+    /**
+     * Adds the point light to a color.
+     * @param color the color with the global light. It gets modified.
+     * @param level the light level of the cell
+     * @return the color
+     */
+    public static Color addPointLight(Color color, int level){
+        if (level > 0) {
+            float brightness = level / (float) MAXLEVEL;
+            color.r += LIGHTCOLOR.r * brightness;
+            color.g += LIGHTCOLOR.g * brightness;
+            color.b += LIGHTCOLOR.b * brightness;
+        }
+        return color;
+    }
+}
@@ -0,0 +1,557 @@
+package com.BombingGames.EngineCore.Map;
+
+import com.BombingGames.EngineCore.Gameobjects.Block;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntMap;
+
+/**
+ *The storage of the map data. The id and value of every cell are kept in flat primitive arrays which are indexed by a linear cell index.
+ * Cell offsets are only stored for the cells which have one. The <i>Block</i> objects are views which are created when they are requested for the first time.<br>
+ * Most blocks are shared between every cell with the same id and value, so the state which belongs to a single cell (the clipping, the lightlevel and the point light) is stored here.
+ * @author Benedikt Vogler
+ */
+public class CellStorage {
+    /**The offset returned for cells without an offset. Do not modify it.*/
+    private static final int[] NOOFFSET = new int[]{0, 0, 0};
+    /**The flag of the clipping which is set when the whole cell is clipped. The sides use the bit 1 &lt;&lt; side.*/
+    public static final byte CLIPPED = 1 << 3;
+    /**The clipping flags when the whole cell and every side is clipped.*/
+    public static final byte ALLCLIPPED = CLIPPED | 1 << Block.LEFTSIDE | 1 << Block.TOPSIDE | 1 << Block.RIGHTSIDE;
+    /**The lightlevel of a cell before the light engine has calculated it.*/
+    public static final float DEFAULTLIGHTLEVEL = 0.5f;
+    /**The version of a chunk which changes with the blocks and the existence of offsets.*/
+    public static final int GEOMETRY = 0;
+    /**The version of a chunk which changes with the clipping.*/
+    public static final int VISIBILITY = 1;
+    /**The version of a chunk which changes with the lightlevels and the point lights.*/
+    public static final int LIGHT = 2;
+
+    private final int sizeX, sizeY, sizeZ;
+    private final short[] ids;
+    private final byte[] values;
+    /**The block views. null if not created yet.*/
+    private final Block[] blocks;
+    /**The offset of every cell which has one.*/
+    private final IntMap<int[]> offsets = new IntMap<int[]>();
+    /**The clipping flags of every cell. Set by the raytracing.*/
+    private final Visibility visibility;
+    /**The lightlevel of every cell. Set by the light engine.*/
+    private final float[] lightlevels;
+    /**The light of every cell which comes from blocks emitting light. Set by the light propagation.*/
+    private final byte[] pointlights;
+    /**The z of the highest block in every column which is not transparent, -1 if there is none. Indexed by index / sizeZ.*/
+    private final byte[] topSolid;
+    /**The z of the highest block in every column which is not air, -1 if there is none. Indexed by index / sizeZ.*/
+    private final byte[] topNonAir;
+    /**The blocks which need an update every frame, indexed by their cell.*/
+    private final IntMap<Block> activeBlocks = new IntMap<Block>();
+    /**Reused to update the active blocks, because an update may change the active blocks.*/
+    private Block[] updateBuffer = new Block[16];
+    /**A counter for every kind of change (GEOMETRY, VISIBILITY, LIGHT) and every chunk in the storage. It is increased when a cell of the chunk changes, so caches can find out which part of them is still valid.*/
+    private final int[][] chunkVersions = new int[3][9];
+    /**Set when a cell of the chunk changed since the version was read. Only true is written, so it can be set by the threads of the raytracing at the same time.*/
+    private final boolean[][] chunkChanged = new boolean[3][9];
+
+    /**
+     * Creates a storage filled with air.
+     * @param sizeX
+     * @param sizeY
+     * @param sizeZ
+     */
+    public CellStorage(int sizeX, int sizeY, int sizeZ) {
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+        ids = new short[sizeX*sizeY*sizeZ];
+        values = new byte[sizeX*sizeY*sizeZ];
+        blocks = new Block[sizeX*sizeY*sizeZ];
+        visibility = new Visibility(sizeX, sizeY, sizeZ);
+        lightlevels = new float[sizeX*sizeY*sizeZ];
+        java.util.Arrays.fill(lightlevels, DEFAULTLIGHTLEVEL);
+        pointlights = new byte[sizeX*sizeY*sizeZ];
+        topSolid = new byte[sizeX*sizeY];
+        topNonAir = new byte[sizeX*sizeY];
+        java.util.Arrays.fill(topSolid, (byte) -1);
+        java.util.Arrays.fill(topNonAir, (byte) -1);
+    }
+
+    /**
+     * The linear index of a cell.
+     * @param x index in the storage
+     * @param y index in the storage
+     * @param z index in the storage
+     * @return
+     */
+    public int index(int x, int y, int z){
+        return (x*sizeY + y)*sizeZ + z;
+    }
+
+    /**
+     * Returns the id of a cell.
+     * @param index the linear index
+     * @return
+     */
+    public int getId(int index){
+        return ids[index];
+    }
+
+    /**
+     * Returns the value of a cell. If the block view changed its value (e.g. an animation) this is used.
+     * @param index the linear index
+     * @return
+     */
+    public int getValue(int index){
+        if (blocks[index] != null) return blocks[index].getValue();
+        return values[index];
+    }
+
+    /**
+     * Returns the block in a cell. It is created when it is requested for the first time. Blocks without an own state are not created, the shared instance is used.
+     * @param index the linear index
+     * @param coords the coordinates of the cell. They are given to blocks which need to know their position.
+     * @return
+     */
+    public Block getBlock(int index, Coordinate coords){
+        Block block = blocks[index];
+        if (block == null) {
+            block = Block.isStateful(ids[index])
+                ? Block.getInstance(ids[index], values[index], coords)
+                : Block.getSharedInstance(ids[index], values[index]);
+            blocks[index] = block;
+            if (block.isTickable()) activeBlocks.put(index, block);
+        }
+        return block;
+    }
+
+    /**
+     * Gives a cell an own block instead of the shared block, e.g. because a property of the block was changed for this cell. The id and value stay the same, so the clipping and the lightlevel are kept.
+     * @param index the linear index
+     * @param block a block with the id and value of the cell
+     */
+    public void setOwnBlock(int index, Block block){
+        if (blocks[index] == block) {
+            changed(index, GEOMETRY);
+            return;
+        }
+        blocks[index] = block;
+        changed(index, GEOMETRY);
+        if (block.isTickable()) activeBlocks.put(index, block);
+    }
+
+    /**
+     * Checks if the block view of a cell exists.
+     * @param index the linear index
+     * @return the block or null if it was not requested yet
+     */
+    public Block getBlockIfExists(int index){
+        return blocks[index];
+    }
+
+    /**
+     * Sets the block of a cell. The offset stays the same. The clipping and the lightlevel are reset until they are calculated again.
+     * @param index the linear index
+     * @param block
+     */
+    public void setBlock(int index, Block block){
+        ids[index] = (short) block.getId();
+        values[index] = (byte) block.getValue();
+        blocks[index] = block;
+        changed(index, GEOMETRY);
+        if (block.isTickable())
+            activeBlocks.put(index, block);
+        else if (activeBlocks.size > 0)
+            activeBlocks.remove(index);
+        visibility.set(index, 0);
+        lightlevels[index] = DEFAULTLIGHTLEVEL;
+        updateHeights(index);
+    }
+
+    /**
+     * Sets the id and value of a cell. The block view is created when it is requested. The clipping and the lightlevel are reset until they are calculated again.
+     * @param index the linear index
+     * @param id
+     * @param value
+     */
+    public void set(int index, int id, int value){
+        ids[index] = (short) id;
+        values[index] = (byte) value;
+        blocks[index] = null;
+        changed(index, GEOMETRY);
+        if (activeBlocks.size > 0) activeBlocks.remove(index);
+        visibility.set(index, 0);
+        lightlevels[index] = DEFAULTLIGHTLEVEL;
+        updateHeights(index);
+    }
+
+    /**
+     * Copies a column of ids and values into the storage. The block views, offsets, clipping, lightlevels and point lights of the column are reset.
+     * Call <i>updateColumnHeights</i> after the blocks with an own state were created.
+     * @param index the linear index of the bottom cell of the column
+     * @param srcIds the source ids
+     * @param srcValues the source values
+     * @param srcIndex the index of the bottom cell in the source arrays
+     */
+    public void setColumn(int index, short[] srcIds, byte[] srcValues, int srcIndex){
+        System.arraycopy(srcIds, srcIndex, ids, index, sizeZ);
+        System.arraycopy(srcValues, srcIndex, values, index, sizeZ);
+        visibility.setGroundVisible(index, false);
+        java.util.Arrays.fill(lightlevels, index, index+sizeZ, DEFAULTLIGHTLEVEL);
+        java.util.Arrays.fill(pointlights, index, index+sizeZ, (byte) 0);
+        changed(index, GEOMETRY);
+        for (int z = 0; z < sizeZ; z++) {
+            blocks[index+z] = null;
+            visibility.set(index+z, 0);
+            if (offsets.size > 0) offsets.remove(index+z);
+            if (activeBlocks.size > 0) activeBlocks.remove(index+z);
+        }
+    }
+
+    /**
+     * Is the block of a cell not transparent? Blocks with an own state which were not created yet count as transparent.
+     * @param index the linear index
+     * @return 
+     */
+    private boolean isSolid(int index){
+        Block block = blocks[index];
+        if (block == null) {
+            if (ids[index] == 0 || Block.isStateful(ids[index])) return false;
+            return !Block.isTransparent(ids[index]);
+        }
+        return !block.isTransparent();
+    }
+    
+    /**
+     * Can light pass a cell? Blocks with an own state which were not created yet count as transparent.
+     * @param index the linear index
+     * @return 
+     */
+    public boolean isTransparent(int index){
+        return !isSolid(index);
+    }
+    
+    /**
+     * Updates the heights of a column after a cell changed. Only when the highest block was removed the column is searched.
+     * @param index the linear index of the changed cell
+     */
+    private void updateHeights(int index){
+        int column = index / sizeZ;
+        int bottom = column*sizeZ;
+        int z = index - bottom;
+        
+        if (ids[index] != 0) {
+            if (z > topNonAir[column]) topNonAir[column] = (byte) z;
+        } else if (z == topNonAir[column]) {
+            int top = z-1;
+            while (top >= 0 && ids[bottom+top] == 0) top--;
+            topNonAir[column] = (byte) top;
+        }
+        
+        if (isSolid(index)) {
+            if (z > topSolid[column]) topSolid[column] = (byte) z;
+        } else if (z == topSolid[column]) {
+            int top = z-1;
+            while (top >= 0 && !isSolid(bottom+top)) top--;
+            topSolid[column] = (byte) top;
+        }
+    }
+    
+    /**
+     * Searches the heights of a whole column.
+     * @param index the linear index of the bottom cell of the column
+     */
+    public void updateColumnHeights(int index){
+        int top = sizeZ-1;
+        while (top >= 0 && ids[index+top] == 0) top--;
+        topNonAir[index / sizeZ] = (byte) top;
+        while (top >= 0 && !isSolid(index+top)) top--;
+        topSolid[index / sizeZ] = (byte) top;
+    }
+    
+    /**
+     * The z of the highest block in a column which is not transparent.
+     * @param index the linear index of a cell of the column
+     * @return -1 if every block of the column is transparent
+     */
+    public int getTopSolid(int index){
+        return topSolid[index / sizeZ];
+    }
+    
+    /**
+     * The z of the highest block in a column which is not air.
+     * @param index the linear index of a cell of the column
+     * @return -1 if the column is empty
+     */
+    public int getTopNonAir(int index){
+        return topNonAir[index / sizeZ];
+    }
+
+    /**
+     * The offset of a cell. The returned array must not be modified.
+     * @param index the linear index
+     * @return
+     */
+    public int[] getOffset(int index){
+        int[] offset = offsets.get(index);
+        if (offset == null) return NOOFFSET;
+        return offset;
+    }
+
+    /**
+     * Has a cell an offset?
+     * @param index the linear index
+     * @return 
+     */
+    public boolean hasOffset(int index){
+        return offsets.size > 0 && offsets.containsKey(index);
+    }
+
+    /**
+     * Set a field of the offset of a cell.
+     * @param index the linear index
+     * @param field 0 = x, 1 = y, 2 = z
+     * @param value
+     */
+    public void setOffset(int index, int field, int value){
+        int[] offset = offsets.get(index);
+        if (offset == null) {
+            if (value == 0) return;
+            offset = new int[3];
+            offsets.put(index, offset);
+            changed(index, GEOMETRY);
+        }
+        offset[field] = value;
+        if (offset[0] == 0 && offset[1] == 0 && offset[2] == 0) {
+            offsets.remove(index);
+            changed(index, GEOMETRY);
+        }
+    }
+
+    /**
+     * Returns the clipping flags of a cell.
+     * @param index the linear index
+     * @return CLIPPED and the bit 1 &lt;&lt; side for every clipped side
+     */
+    public byte getClipping(int index){
+        return visibility.get(index);
+    }
+
+    /**
+     * Is the whole cell clipped?
+     * @param index the linear index
+     * @return
+     */
+    public boolean isClipped(int index){
+        return (visibility.get(index) & CLIPPED) != 0;
+    }
+
+    /**
+     * Clip or unclip a cell. When it gets clipped every side gets also clipped. Unclipping does not change the sides.
+     * @param index the linear index
+     * @param clipped
+     */
+    public void setClipped(int index, boolean clipped){
+        byte old = visibility.get(index);
+        setClipping(index, clipped ? ALLCLIPPED : old & ~CLIPPED);
+    }
+
+    /**
+     * Make a side of a cell (in)clipping. If one side is not clipped, the whole cell is not clipped.
+     * @param index the linear index
+     * @param side 0 = left, 1 = top, 2 = right
+     * @param clip true when it should be clipped.
+     */
+    public void setSideClipping(int index, int side, boolean clip){
+        byte old = visibility.get(index);
+        setClipping(index, clip ? old | 1 << side : old & ~(CLIPPED | 1 << side));
+    }
+    
+    /**
+     * Set every clipping flag of a cell.
+     * @param index the linear index
+     * @param flags CLIPPED and the bit 1 &lt;&lt; side for every clipped side
+     */
+    public void setClipping(int index, int flags){
+        if (visibility.get(index) != flags) {
+            visibility.set(index, flags);
+            changed(index, VISIBILITY);
+        }
+    }
+    
+    /**
+     * Clips every cell with the same x index in the storage and hides the ground below them. This is the start of the raytracing.
+     * @param index the linear index of a cell of the slab
+     */
+    public void clipSlab(int index){
+        int slab = index / (sizeY*sizeZ);
+        visibility.clipSlab(slab);
+        for (int chunkY = 0; chunkY < 3; chunkY++)
+            changed(index(slab, chunkY*sizeY/3, 0), VISIBILITY);
+    }
+    
+    /**
+     * Is the ground below a column visible? Set by the raytracing.
+     * @param index the linear index of a cell of the column
+     * @return 
+     */
+    public boolean isGroundVisible(int index){
+        return visibility.isGroundVisible(index);
+    }
+    
+    /**
+     * Set if the ground below a column is visible.
+     * @param index the linear index of a cell of the column
+     * @param visible 
+     */
+    public void setGroundVisible(int index, boolean visible){
+        visibility.setGroundVisible(index, visible);
+    }
+
+    /**
+     * The brightness of a cell. The lightlevel is a number between 0 and 1. 1 is full bright. 0 is black. Default is .5.
+     * @param index the linear index
+     * @return
+     */
+    public float getLightlevel(int index){
+        return lightlevels[index];
+    }
+
+    /**
+     * Set the brightness of a cell.
+     * @param index the linear index
+     * @param lightlevel between 0 and 1
+     */
+    public void setLightlevel(int index, float lightlevel){
+        if (lightlevels[index] != lightlevel) {
+            lightlevels[index] = lightlevel;
+            changed(index, LIGHT);
+        }
+    }
+    
+    /**
+     * The light of a cell coming from blocks which emit light.
+     * @param index the linear index
+     * @return between 0 (no light) and <i>LightPropagation.MAXLEVEL</i>
+     */
+    public int getPointLight(int index){
+        return pointlights[index];
+    }
+
+    /**
+     * Set the light of a cell coming from blocks which emit light.
+     * @param index the linear index
+     * @param level between 0 (no light) and <i>LightPropagation.MAXLEVEL</i>
+     */
+    public void setPointLight(int index, int level){
+        if (pointlights[index] != level) {
+            pointlights[index] = (byte) level;
+            changed(index, LIGHT);
+        }
+    }
+    
+    /**
+     * Returns the chunk of the storage which contains a cell.
+     * @param index the linear index
+     * @return the slot of the chunk in the storage (x*3+y), not the position in the map
+     */
+    public int getChunkSlot(int index){
+        int x = index / (sizeY*sizeZ);
+        int y = (index / sizeZ) % sizeY;
+        return x / (sizeX/3) * 3 + y / (sizeY/3);
+    }
+    
+    /**
+     * Returns a counter which is increased every time a cell of a chunk changes. The kinds of changes are counted separately, so a cache of the blocks does not need to be rebuilt when only the clipping or the light changed.
+     * @param slot the slot of the chunk in the storage
+     * @param kind GEOMETRY (the block or the existence of an offset), VISIBILITY (the clipping) or LIGHT (the lightlevel or the point light)
+     * @return 
+     * @see #getChunkSlot(int) 
+     */
+    public int getChunkVersion(int slot, int kind){
+        if (chunkChanged[kind][slot]) {
+            chunkChanged[kind][slot] = false;
+            chunkVersions[kind][slot]++;
+        }
+        return chunkVersions[kind][slot];
+    }
+    
+    /**
+     * Marks the chunk of a cell as changed.
+     * @param index the linear index
+     * @param kind GEOMETRY, VISIBILITY or LIGHT
+     */
+    private void changed(int index, int kind){
+        chunkChanged[kind][getChunkSlot(index)] = true;
+    }
+    
+    /**
+     * Collects the cells which can change without a notice: the cells of active blocks and cells with an offset.
+     * @param result the indices of the cells are written into this array. It gets cleared first.
+     */
+    public void getDynamicCells(IntArray result){
+        result.clear();
+        IntMap.Keys keys = activeBlocks.keys();
+        while (keys.hasNext)
+            result.add(keys.next());
+        keys = offsets.keys();
+        while (keys.hasNext) {
+            int index = keys.next();
+            if (!activeBlocks.containsKey(index)) result.add(index);
+        }
+    }
+
+    /**
+     * Updates every active block. Only the blocks which are tickable get updated, so the cost depends on the amount of active blocks and not on the size of the map.
+     * @param delta
+     * @see Block#isTickable() 
+     */
+    public void updateBlocks(float delta){
+        int count = activeBlocks.size;
+        if (updateBuffer.length < count) updateBuffer = new Block[count*2];
+        int i = 0;
+        for (Block block : activeBlocks.values()) {
+            updateBuffer[i++] = block;
+        }
+        for (i = 0; i < count; i++) {
+            updateBuffer[i].update(delta);
+            updateBuffer[i] = null;
+        }
+    }
+    
+    /**
+     * The amount of blocks which get updated every frame.
+     * @return 
+     */
+    public int getActiveBlockCount(){
+        return activeBlocks.size;
+    }
+
+    /**
+     * Fills the storage with air and removes every offset.
+     */
+    public void clear(){
+        java.util.Arrays.fill(ids, (short) 0);
+        java.util.Arrays.fill(values, (byte) 0);
+        java.util.Arrays.fill(blocks, null);
+        visibility.clear();
+        java.util.Arrays.fill(lightlevels, DEFAULTLIGHTLEVEL);
+        java.util.Arrays.fill(pointlights, (byte) 0);
+        java.util.Arrays.fill(topSolid, (byte) -1);
+        java.util.Arrays.fill(topNonAir, (byte) -1);
+        offsets.clear();
+        activeBlocks.clear();
+        for (boolean[] changed : chunkChanged)
+            java.util.Arrays.fill(changed, true);
+    }
+
+    public int getSizeX() {
+        return sizeX;
+    }
+
+    public int getSizeY() {
+        return sizeY;
+    }
+
+    public int getSizeZ() {
+        return sizeZ;
+    }
+}
@@ -6,7 +6,11 @@ import com.BombingGames.WurfelEngine;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.files.FileHandle;
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.JOptionPane;
@@ -27,22 +31,21 @@ public class Chunk {
     private static int blocksY = 40;//blocksY must be even number
     private static int blocksZ = 10;
     
-    private Cell data[][][];
+    /**The ids of the cells. The index is (x*blocksY + y)*blocksZ + z, so a column is stored in one piece.*/
+    private final short[] ids;
+    /**The values of the cells. Same index as the ids.*/
+    private final byte[] values;
   
     /**
      * Creates a Chunk filled with air
      */
     public Chunk() {
-        data = new Cell[blocksX][blocksY][blocksZ];
-        
-        for (int x=0; x < blocksX; x++)
-            for (int y=0; y < blocksY; y++)
-                for (int z=0; z < blocksZ; z++)
-                    data[x][y][z] = new Cell();
+        ids = new short[blocksX*blocksY*blocksZ];
+        values = new byte[blocksX*blocksY*blocksZ];
     }
     
     /**
-    *Creates a chunk.
+    *Creates a chunk. This can be called from any thread.
     * @param pos the position of the chunk. Value between 0-8
     * @param coordX 
     * @param coordY 
@@ -56,22 +59,33 @@ public class Chunk {
         else load(pos, coordX, coordY);
     }
     
+    /**
+     * Creates a chunk out of raw data, e.g. a decompressed chunk. This can be called from any thread.
+     * @param coordX the chunk coordinate
+     * @param coordY the chunk coordinate
+     * @param chunkfile the raw data
+     */
+    public Chunk(int coordX, int coordY, ChunkFile chunkfile){
+        this();
+        fill(chunkfile, coordX, coordY);
+    }
+    
     /**
      * Generates new content for a chunk.
      */  
     private void generate(int pos, int coordX, int coordY){
         //chunkdata will contain the blocks and objects
         //alternative to chunkdata.length ChunkBlocks
-        GameplayScreen.msgSystem().add("Creating new chunk: "+coordX+", "+ coordY);
+        postMessage("Creating new chunk: "+coordX+", "+ coordY);
         switch (generator){
             case 0:{//random pillars
                 for (int x=0; x < blocksX; x++){
                     for (int y=0; y < blocksY; y++){
                         int height = (int) (Math.random()*blocksZ-1)+1;
                         for (int z=0; z < height; z++){
-                            data[x][y][z] = new Cell(2);
+                            set(x, y, z, 2, 0);
                             }
-                        data[x][y][height] = new Cell(1);
+                        set(x, y, height, 1, 0);
                     }
                 }
                 break;
@@ -82,9 +96,9 @@ public class Chunk {
                 for (int x=0; x < blocksX; x++)
                     for (int y=0; y < blocksY; y++){
                         
-                        data[x][y][0] = new Cell(8);
-                        data[x][y][1] = new Cell(9, 0, new Coordinate(x + pos % 3 * blocksX, y + pos / 3 * blocksY, 1, true));
-                        data[x][y][2] = new Cell(9, 0, new Coordinate(x + pos % 3 * blocksX, y + pos / 3 * blocksY, 2, true));
+                        set(x, y, 0, 8, 0);
+                        set(x, y, 1, 9, 0);
+                        set(x, y, 2, 9, 0);
                     }
                 
                 //mountain
@@ -97,18 +111,18 @@ public class Chunk {
                         if (height>0){
                             for (int z=0; z < height; z++) {
                                 if (height > 2)
-                                    data[x][y][z] = new Cell(2);
+                                    set(x, y, z, 2, 0);
                                 else
-                                    data[x][y][z] = new Cell(8);
+                                    set(x, y, z, 8, 0);
                                     
                             }
                             if (height > 2)
-                                    data[x][y][height] = new Cell(1);
+                                    set(x, y, height, 1, 0);
                                 else
-                                    data[x][y][height] = new Cell(8);
+                                    set(x, y, height, 8, 0);
                             
-                            if (Math.random() < 0.15f && height < getBlocksZ()-1 && height > 2) data[x][y][height+1] = new Cell(34);
-                            if (Math.random() < 0.15f && height < getBlocksZ()-1 && height > 2) data[x][y][height+1] = new Cell(35);
+                            if (Math.random() < 0.15f && height < getBlocksZ()-1 && height > 2) set(x, y, height+1, 34, 0);
+                            if (Math.random() < 0.15f && height < getBlocksZ()-1 && height > 2) set(x, y, height+1, 35, 0);
                         }
                     }
                 break;
@@ -120,10 +134,10 @@ public class Chunk {
                         if (blocksZ>1){
                             int z;
                             for (z=0; z < blocksZ/2; z++){
-                                data[x][y][z] = new Cell(2);
+                                set(x, y, z, 2, 0);
                             }
-                            data[x][y][z-1] = new Cell(1);
-                        }else data[x][y][0] = new Cell(2);
+                            set(x, y, z-1, 1, 0);
+                        }else set(x, y, 0, 2, 0);
                     }
                 break;
             }
@@ -132,13 +146,13 @@ public class Chunk {
                 int pillarx = (int) (Math.random()*blocksX-1);
                 int pillary = (int) (Math.random()*blocksY-1);
                 //pillar
-                for (int z=0; z < blocksZ; z++) data[pillarx][pillary][z] = new Cell(1);
+                for (int z=0; z < blocksZ; z++) set(pillarx, pillary, z, 1, 0);
                 
                 //flat grass
                 for (int x=0; x < blocksX; x++)
                     for (int y=0; y < blocksY; y++){
-                        data[x][y][0] = new Cell(2);
-                        data[x][y][1] = new Cell(3);
+                        set(x, y, 0, 2, 0);
+                        set(x, y, 1, 3, 0);
                     }
                 break;
             }
@@ -148,8 +162,8 @@ public class Chunk {
                     for (int y=0; y < blocksY; y++)
                         for (int z=0; z < blocksZ-1; z++){
                             if (z!=blocksZ-2)
-                                 data[x][y][z] = new Cell(2);
-                            else data[x][y][z] = new Cell(1);
+                                 set(x, y, z, 2, 0);
+                            else set(x, y, z, 1, 0);
                     }
             }
             break;
@@ -157,7 +171,7 @@ public class Chunk {
             case 5: {//animation test                
                 for (int x=0; x < blocksX; x++)
                     for (int y=0; y < blocksY; y++){
-                        data[x][y][0] = new Cell(72);
+                        set(x, y, 0, 72, 0);
                     }
                 //data[blocksX/2][blocksY/2][2].newBlock(72);//animation test
                 //data[blocksX/2][blocksY/2][1].newBlock(2);
@@ -167,7 +181,7 @@ public class Chunk {
             case 6: {//every block                
                 for (int x=0; x < blocksX; x++)
                     for (int y=0; y < blocksY; y++){
-                        data[x][y][0] = new Cell(y, 0, new Coordinate(x + pos % 3 * blocksX, y + pos / 3 * blocksY, 0, true));
+                        set(x, y, 0, y, 0);
                     }
                 break;
             }
@@ -177,9 +191,9 @@ public class Chunk {
                         if (blocksZ>1){
                             int z;
                             for (z=0; z < blocksZ/2; z++){
-                                data[x][y][z] = new Cell(9);
+                                set(x, y, z, 9, 0);
                             }
-                        }else data[x][y][0] = new Cell(9);
+                        }else set(x, y, 0, 9, 0);
                     }
                 break;
             }
@@ -187,14 +201,14 @@ public class Chunk {
                 //flat grass
                 for (int x=0; x < blocksX; x++)
                     for (int y=0; y < blocksY; y++){
-                        data[x][y][0] = new Cell(2);
-                        data[x][y][1] = new Cell(3);
+                        set(x, y, 0, 2, 0);
+                        set(x, y, 1, 3, 0);
                     }
                 
                 int specialx = (int) (Math.random()*blocksX-1);
                 int specialy = (int) (Math.random()*blocksY-1);
                 //special block
-                data[specialx][specialy][1] = new Cell(40, 0, new Coordinate(specialx + pos % 3 * blocksX, specialy + pos / 3 * blocksY, 1, true));
+                set(specialx, specialy, 1, 40, 0);
                 break;
             }
                 
@@ -203,7 +217,7 @@ public class Chunk {
                     for (int y=0; y < blocksY; y++){
                         int height = (int) (Math.random()*blocksZ-1)+1;
                         for (int z=0; z < height; z++){
-                            data[x][y][z] = new Cell(44,0);
+                            set(x, y, z, 44, 0);
                         }
                     }
                 break;
@@ -213,7 +227,7 @@ public class Chunk {
                 for (int x=0; x < blocksX; x++)
                     for (int y=0; y < blocksY; y++){
                         for (int z=0; z < blocksZ; z++){
-                            data[x][y][z] = new Cell(0);
+                            set(x, y, z, 0, 0);
                         }
                     }
                 break;
@@ -222,71 +236,43 @@ public class Chunk {
     }
     
     /**
-     * Trys to load a chunk from disk.
+     * Trys to load a chunk from disk. The format (text or binary) is detected automatically.
      */
     private void load(int pos, int coordX, int coordY){
-        //Reading map files test
         try {
             FileHandle path = Gdx.files.internal("map/chunk"+coordX+","+coordY+"."+CHUNKFILESUFFIX);
             
             Gdx.app.log("Map","Trying to load Chunk: "+ coordX + ", "+ coordY + " from \"" + path.path() + "\"");
-            GameplayScreen.msgSystem().add("Load: "+coordX+","+coordY);
+            postMessage("Load: "+coordX+","+coordY);
             
             if (path.exists()) {
-                //FileReader input = new FileReader("map/chunk"+coordX+","+coordY+".otmc");
-                //BufferedReader bufRead = new BufferedReader(input);
-                BufferedReader bufRead = path.reader(30000);//normal chunk file is around 17.000byte
-
-                StringBuilder line;
-                //jump over first line to prevent problems with length byte
-                bufRead.readLine();
-
-
-                int z = 0;
-                int x;
-                int y;
-                String lastline;
-
-                //finish a layer
-                do {
-                    line = new StringBuilder(1);
-                    line.append(bufRead.readLine());
-                    
-                    if ((line.charAt(1) == '/') && (line.charAt(2) == '/')){//jump over optional comment line
-                        line = new StringBuilder(1);
-                        line.append(bufRead.readLine());
+                ChunkFile chunkfile;
+                File file = path.file();
+                if (file != null && file.exists()) {
+                    //read from the file system, binary files are mapped into memory
+                    if (ChunkFile.isBinary(file))
+                        chunkfile = ChunkFile.readBinary(file);
+                    else {
+                        BufferedReader reader = path.reader(30000);//normal chunk file is around 17.000byte
+                        try {
+                            chunkfile = ChunkFile.readText(reader, blocksX, blocksY, blocksZ);
+                        } finally {
+                            reader.close();
+                        }
                     }
-
-                    //Ebene
-                    y = 0;
-                    do{
-                        x = 0;
-
-                        do{
-                            int posdots = line.indexOf(":");
-
-                            int posend = 1;
-                            while ((posend < -1+line.length()) && (line.charAt(posend)!= ' '))  {
-                                posend++;
-                            }
-
-                            data[x][y][z] = new Cell(
-                                        Integer.parseInt(line.substring(0,posdots)),
-                                        Integer.parseInt(line.substring(posdots+1, posend)),
-                                        new Coordinate(x + pos % 3 * blocksX, y + pos / 3 * blocksY, z, true)
-                            );
-                            x++;
-                            line.delete(0,posend+1);
-                        } while (x < blocksX);
-
-                        line = new StringBuilder(1);
-                        line.append(bufRead.readLine());
-
-                        y++;
-                    } while (y < blocksY);
-                    lastline = bufRead.readLine();
-                    z++;
-                } while (lastline != null);
+                } else {
+                    //e.g. inside a jar
+                    byte[] bytes = path.readBytes();
+                    if (ChunkFile.isBinary(bytes))
+                        chunkfile = ChunkFile.readBinary(ByteBuffer.wrap(bytes));
+                    else
+                        chunkfile = ChunkFile.readText(
+                            new BufferedReader(new InputStreamReader(new ByteArrayInputStream(bytes))),
+                            blocksX, blocksY, blocksZ
+                        );
+                }
+                
+                fill(chunkfile, coordX, coordY);
             } else {
                 Gdx.app.log("Map","...but it could not be found.");
                 generate(pos, coordX, coordY);
@@ -296,6 +282,48 @@ public class Chunk {
         }
     }
     
+    /**
+     * Fills the chunk with the blocks of a chunk file.
+     * @param chunkfile the raw data
+     * @param coordX the chunk coordinate
+     * @param coordY the chunk coordinate
+     */
+    private void fill(ChunkFile chunkfile, int coordX, int coordY){
+        if (chunkfile.getBlocksX() != blocksX || chunkfile.getBlocksY() != blocksY || chunkfile.getBlocksZ() != blocksZ)
+            Gdx.app.error("Map","Chunk "+coordX+","+coordY+" has a different size than the map.");
+
+        for (int x = 0; x < Math.min(blocksX, chunkfile.getBlocksX()); x++)
+            for (int y = 0; y < Math.min(blocksY, chunkfile.getBlocksY()); y++)
+                for (int z = 0; z < Math.min(blocksZ, chunkfile.getBlocksZ()); z++)
+                    set(x, y, z, chunkfile.getId(x, y, z), chunkfile.getValue(x, y, z));
+    }
+    
+    /**
+     * Sets a block of the chunk.
+     * @param x
+     * @param y
+     * @param z
+     * @param id
+     * @param value 
+     */
+    private void set(int x, int y, int z, int id, int value){
+        ids[(x*blocksY + y)*blocksZ + z] = (short) id;
+        values[(x*blocksY + y)*blocksZ + z] = (byte) value;
+    }
+    
+    /**
+     * Adds a message to the message system. Chunks can be created on worker threads so the message is passed to the render thread.
+     * @param message 
+     */
+    private static void postMessage(final String message){
+        Gdx.app.postRunnable(new Runnable() {
+            @Override
+            public void run() {
+                GameplayScreen.msgSystem().add(message);
+            }
+        });
+    }
+    
     /**
      * reads the map info file and sets the size of the chunk
      */
@@ -342,6 +370,19 @@ public class Chunk {
         }
     }
     
+    /**
+     * Sets the size of the chunks without a meta file, e.g. for a benchmark. Use it only before a map is created.
+     * @param blocksX the amount of blocks in X direction
+     * @param blocksY the amount of blocks in Y direction. Must be an even number.
+     * @param blocksZ the amount of blocks in Z direction
+     */
+    public static void setSize(int blocksX, int blocksY, int blocksZ){
+        if (blocksY % 2 != 0) throw new IllegalArgumentException("blocksY must be an even number: "+blocksY);
+        Chunk.blocksX = blocksX;
+        Chunk.blocksY = blocksY;
+        Chunk.blocksZ = blocksZ;
+    }
+    
         /**
      * The amount of blocks in X direction
      * @return 
@@ -368,19 +409,19 @@ public class Chunk {
     
 
     /**
-     * Returns the data of the chunk
+     * Returns the ids of the chunk. The index is (x*blocksY + y)*blocksZ + z.
      * @return 
      */
-    public Cell[][][] getData() {
-        return data;
+    public short[] getIds() {
+        return ids;
     }
 
     /**
-     * 
-     * @param data
+     * Returns the values of the chunk. The index is (x*blocksY + y)*blocksZ + z.
+     * @return 
      */
-    public void setData(Cell[][][] data) {
-        this.data = data;
+    public byte[] getValues() {
+        return values;
     }
 
     /**
@@ -0,0 +1,128 @@
+package com.BombingGames.EngineCore.Map;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ *Converts the chunk files of a map from the text format into the binary format. The size of the chunks is read from the meta file.
+ * The meta file (map.wem) is not converted, it is small and only read once when the map is loaded, so it stays a text file. When an output directory is given it is copied there, so the output is a complete map.
+ * Usage: ChunkConverter [map directory] [output directory]. The default map directory is "map". Without an output directory the files are converted in place.
+ * @author Benedikt Vogler
+ */
+public class ChunkConverter {
+
+    /**
+     * @param args the map directory and the optional output directory
+     */
+    public static void main(String[] args) {
+        File mapdir = new File(args.length > 0 ? args[0] : "map");
+        File outputdir = args.length > 1 ? new File(args[1]) : mapdir;
+        try {
+            convert(mapdir, outputdir);
+        } catch (IOException ex) {
+            System.err.println("Converting failed: "+ex);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Converts every text chunk file in a map directory. Binary files are skipped. The meta file is copied unchanged.
+     * @param mapdir the directory containing the meta file and the chunks
+     * @param outputdir where the binary files are written
+     * @return the amount of converted files
+     * @throws IOException
+     */
+    public static int convert(File mapdir, File outputdir) throws IOException{
+        int[] size = readSize(new File(mapdir, "map."+Chunk.METAFILESUFFIX));
+        System.out.println("Chunk size: "+size[0]+"x"+size[1]+"x"+size[2]);
+
+        if (!outputdir.exists() && !outputdir.mkdirs())
+            throw new IOException("Could not create "+outputdir);
+        
+        File metafile = new File(mapdir, "map."+Chunk.METAFILESUFFIX);
+        if (!metafile.getCanonicalFile().equals(new File(outputdir, metafile.getName()).getCanonicalFile())) {
+            copy(metafile, new File(outputdir, metafile.getName()));
+            System.out.println("Copied "+metafile.getName());
+        }
+
+        File[] files = mapdir.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith("."+Chunk.CHUNKFILESUFFIX);
+            }
+        });
+        if (files == null) throw new IOException(mapdir+" is not a directory.");
+
+        int count = 0;
+        for (File file : files) {
+            if (ChunkFile.isBinary(file)) {
+                System.out.println("Skipping "+file.getName()+", already binary");
+                continue;
+            }
+            BufferedReader reader = new BufferedReader(new FileReader(file), 30000);
+            ChunkFile chunkfile;
+            try {
+                chunkfile = ChunkFile.readText(reader, size[0], size[1], size[2]);
+            } finally {
+                reader.close();
+            }
+            chunkfile.writeBinary(new File(outputdir, file.getName()));
+            System.out.println("Converted "+file.getName());
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Copies a file.
+     * @param source
+     * @param destination
+     * @throws IOException
+     */
+    private static void copy(File source, File destination) throws IOException{
+        InputStream in = new FileInputStream(source);
+        try {
+            OutputStream out = new FileOutputStream(destination);
+            try {
+                byte[] buffer = new byte[1024];
+                int read;
+                while ((read = in.read(buffer)) > 0)
+                    out.write(buffer, 0, read);
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads the chunk size out of the meta file. Every line starts with a two character prefix. The lines are: name, version, x, y, z.
+     * @param metafile
+     * @return the size in x, y and z
+     * @throws IOException
+     */
+    private static int[] readSize(File metafile) throws IOException{
+        BufferedReader reader = new BufferedReader(new FileReader(metafile), 1024);
+        try {
+            reader.readLine();//name
+            reader.readLine();//version
+            int[] size = new int[3];
+            for (int i = 0; i < 3; i++) {
+                String line = reader.readLine();
+                if (line == null) throw new IOException("The meta file is incomplete.");
+                size[i] = Integer.parseInt(line.substring(2).trim());
+            }
+            return size;
+        } finally {
+            reader.close();
+        }
+    }
+}
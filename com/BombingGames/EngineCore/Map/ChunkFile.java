@@ -0,0 +1,246 @@
+package com.BombingGames.EngineCore.Map;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ *The raw content of a chunk file: the ids and values of every cell. It can read the old text format and the binary format and write the binary format.
+ * This class does not use libGDX, so it can be used by tools like the <i>ChunkConverter</i>.<br>
+ * The binary format (all numbers big endian):<br>
+ * int magic "WECB", int version, int blocksX, int blocksY, int blocksZ, then the body.<br>
+ * Version 1 body: short[] ids, byte[] values. The arrays are ordered like the text format: layer by layer (z), row by row (y), then x.<br>
+ * Version 2 body: the palette and run-length encoded layers of a <i>CompressedChunk</i>.
+ * @author Benedikt Vogler
+ */
+public class ChunkFile {
+    /**The first four bytes of a binary chunk file.*/
+    public static final int MAGIC = 0x57454342;//"WECB"
+    /**The version of the binary format with raw arrays.*/
+    public static final int VERSION_RAW = 1;
+    /**The version of the binary format with compressed layers. This version is written.*/
+    public static final int VERSION_COMPRESSED = 2;
+    /**The size of the header in bytes.*/
+    public static final int HEADERSIZE = 5*4;
+
+    private final int blocksX, blocksY, blocksZ;
+    private final short[] ids;
+    private final byte[] values;
+
+    /**
+     * Creates an empty chunk file filled with air.
+     * @param blocksX
+     * @param blocksY
+     * @param blocksZ
+     */
+    public ChunkFile(int blocksX, int blocksY, int blocksZ) {
+        this.blocksX = blocksX;
+        this.blocksY = blocksY;
+        this.blocksZ = blocksZ;
+        ids = new short[blocksX*blocksY*blocksZ];
+        values = new byte[blocksX*blocksY*blocksZ];
+    }
+
+    /**
+     * Checks the first bytes of a file to find out which format it uses.
+     * @param header at least the first four bytes of the file
+     * @return true if it is a binary chunk file
+     */
+    public static boolean isBinary(byte[] header){
+        return header.length >= 4
+            && ByteBuffer.wrap(header).order(ByteOrder.BIG_ENDIAN).getInt(0) == MAGIC;
+    }
+
+    /**
+     * Checks the first bytes of a file to find out which format it uses.
+     * @param file
+     * @return true if it is a binary chunk file
+     * @throws IOException
+     */
+    public static boolean isBinary(File file) throws IOException{
+        InputStream input = new FileInputStream(file);
+        try {
+            byte[] header = new byte[4];
+            int read = 0;
+            while (read < 4) {
+                int n = input.read(header, read, 4 - read);
+                if (n < 0) return false;
+                read += n;
+            }
+            return isBinary(header);
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Reads a binary chunk file by mapping it into memory.
+     * @param file the file
+     * @return
+     * @throws IOException
+     */
+    public static ChunkFile readBinary(File file) throws IOException{
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return readBinary(buffer);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Reads a binary chunk file.
+     * @param buffer the content of the file
+     * @return
+     * @throws IOException if the header is not valid
+     */
+    public static ChunkFile readBinary(ByteBuffer buffer) throws IOException{
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        if (buffer.remaining() < HEADERSIZE || buffer.getInt() != MAGIC)
+            throw new IOException("Not a binary chunk file.");
+        int version = buffer.getInt();
+        int blocksX = buffer.getInt();
+        int blocksY = buffer.getInt();
+        int blocksZ = buffer.getInt();
+        //the arrays of the chunk must be possible
+        if (blocksX <= 0 || blocksY <= 0 || blocksZ <= 0 || (long) blocksX*blocksY*blocksZ > Integer.MAX_VALUE/3)
+            throw new IOException("Invalid chunk size.");
+        
+        if (version == VERSION_COMPRESSED)
+            return CompressedChunk.read(buffer, blocksX, blocksY, blocksZ).decompress();
+        if (version != VERSION_RAW)
+            throw new IOException("Unsupported chunk file version: "+version);
+
+        ChunkFile chunkfile = new ChunkFile(blocksX, blocksY, blocksZ);
+        if (buffer.remaining() < chunkfile.ids.length*3)
+            throw new IOException("Chunk file is truncated.");
+        buffer.asShortBuffer().get(chunkfile.ids);
+        buffer.position(buffer.position() + chunkfile.ids.length*2);
+        buffer.get(chunkfile.values);
+        return chunkfile;
+    }
+
+    /**
+     * Reads a chunk in the text format. Every cell is written as "id:value". Empty lines and lines starting with "//" are skipped.
+     * @param reader
+     * @param blocksX
+     * @param blocksY
+     * @param blocksZ
+     * @return
+     * @throws IOException
+     */
+    public static ChunkFile readText(BufferedReader reader, int blocksX, int blocksY, int blocksZ) throws IOException{
+        ChunkFile chunkfile = new ChunkFile(blocksX, blocksY, blocksZ);
+        int index = 0;
+        String line;
+        while (index < chunkfile.ids.length && (line = reader.readLine()) != null) {
+            if (line.startsWith("//")) continue;
+
+            int i = 0;
+            int length = line.length();
+            while (i < length && index < chunkfile.ids.length) {
+                //skip whitespace
+                while (i < length && line.charAt(i) <= ' ') i++;
+                if (i >= length) break;
+
+                int id = 0;
+                while (i < length && line.charAt(i) != ':') {
+                    id = id*10 + (line.charAt(i) - '0');
+                    i++;
+                }
+                i++;//jump over ':'
+                int value = 0;
+                while (i < length && line.charAt(i) > ' ') {
+                    value = value*10 + (line.charAt(i) - '0');
+                    i++;
+                }
+
+                chunkfile.ids[index] = (short) id;
+                chunkfile.values[index] = (byte) value;
+                index++;
+            }
+        }
+        return chunkfile;
+    }
+
+    /**
+     * Writes the chunk in the compressed binary format.
+     * @param file the destination
+     * @throws IOException
+     */
+    public void writeBinary(File file) throws IOException{
+        CompressedChunk compressed = CompressedChunk.compress(this);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADERSIZE + compressed.getSize()).order(ByteOrder.BIG_ENDIAN);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION_COMPRESSED);
+        buffer.putInt(blocksX);
+        buffer.putInt(blocksY);
+        buffer.putInt(blocksZ);
+        compressed.write(buffer);
+        buffer.flip();
+
+        FileOutputStream output = new FileOutputStream(file);
+        try {
+            output.getChannel().write(buffer);
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * The id at a position.
+     * @param x
+     * @param y
+     * @param z
+     * @return
+     */
+    public int getId(int x, int y, int z){
+        return ids[(z*blocksY + y)*blocksX + x];
+    }
+
+    /**
+     * The value at a position.
+     * @param x
+     * @param y
+     * @param z
+     * @return
+     */
+    public int getValue(int x, int y, int z){
+        return values[(z*blocksY + y)*blocksX + x];
+    }
+
+    /**
+     * Sets the id and value at a position.
+     * @param x
+     * @param y
+     * @param z
+     * @param id
+     * @param value
+     */
+    public void set(int x, int y, int z, int id, int value){
+        ids[(z*blocksY + y)*blocksX + x] = (short) id;
+        values[(z*blocksY + y)*blocksX + x] = (byte) value;
+    }
+
+    public int getBlocksX() {
+        return blocksX;
+    }
+
+    public int getBlocksY() {
+        return blocksY;
+    }
+
+    public int getBlocksZ() {
+        return blocksZ;
+    }
+}
@@ -0,0 +1,258 @@
+package com.BombingGames.EngineCore.Map;
+
+import com.badlogic.gdx.Gdx;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ *The chunk provider loads and generates chunks on a pool of worker threads so that a chunk switch does not stall the render thread.
+ * The bookkeeping is only done on the render thread. Finished chunks are handed to the map at a frame boundary via <i>poll()</i>.
+ * @author Benedikt Vogler
+ */
+public class ChunkProvider {
+    /**The amount of chunks which are prepared at the same time. Further requests wait in a queue.*/
+    private static int maxInFlight = 3;
+
+    private final boolean newMap;
+    private final ExecutorService workers;
+
+    /**Chunks which are currently prepared by a worker.*/
+    private final HashMap<Long, Future<Chunk>> inFlight = new HashMap<Long, Future<Chunk>>(maxInFlight*2);
+    /**Requests which wait for a free worker.*/
+    private final ArrayDeque<Request> pending = new ArrayDeque<Request>(9);
+    /**Chunks which are finished but not yet taken by the map.*/
+    private final HashMap<Long, Chunk> finished = new HashMap<Long, Chunk>(9);
+    /**The amount of compressed chunks which are kept in memory.*/
+    private static int maxStored = 4096;
+    /**Chunks which left the loaded map. They are kept compressed, so edits survive and loading them again only needs decompression. The least recently used is dropped first.*/
+    private final LinkedHashMap<Long, CompressedChunk> stored = new LinkedHashMap<Long, CompressedChunk>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(java.util.Map.Entry<Long, CompressedChunk> eldest) {
+            return size() > maxStored;
+        }
+    };
+
+    /**
+     * Creates a provider with a worker for every free processor core.
+     * @param newMap load from HD(false) or generate new (true)?
+     */
+    public ChunkProvider(boolean newMap) {
+        this.newMap = newMap;
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors()-1);
+        workers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private int count = 0;
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ChunkProvider-"+count++);
+                thread.setDaemon(true);//do not keep the game alive
+                thread.setPriority(Thread.NORM_PRIORITY-1);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Requests a chunk. It is prepared in the background after the other waiting requests. Nothing happens when the chunk is already requested.
+     * @param pos the position of the chunk in the map. Value between 0-8
+     * @param coordX the chunk coordinate
+     * @param coordY the chunk coordinate
+     */
+    public void request(int pos, int coordX, int coordY){
+        request(pos, coordX, coordY, false);
+    }
+
+    /**
+     * Requests a chunk which is needed now. It is prepared before every other waiting request.
+     * @param pos the position of the chunk in the map. Value between 0-8
+     * @param coordX the chunk coordinate
+     * @param coordY the chunk coordinate
+     */
+    public void requestNow(int pos, int coordX, int coordY){
+        request(pos, coordX, coordY, true);
+    }
+
+    private void request(int pos, int coordX, int coordY, boolean urgent){
+        long key = key(coordX, coordY);
+        if (finished.containsKey(key) || inFlight.containsKey(key)) return;
+        for (Iterator<Request> it = pending.iterator(); it.hasNext();) {
+            Request request = it.next();
+            if (request.key == key) {
+                if (!urgent) return;
+                it.remove();//move it to the front
+            }
+        }
+        if (urgent)
+            pending.addFirst(new Request(pos, coordX, coordY));
+        else
+            pending.addLast(new Request(pos, coordX, coordY));
+        submitPending();
+    }
+
+    /**
+     * Returns a finished chunk and removes it from the provider. This does not block.
+     * @param coordX the chunk coordinate
+     * @param coordY the chunk coordinate
+     * @return the chunk or <i>null</i> when it is not ready yet
+     */
+    public Chunk poll(int coordX, int coordY){
+        collectFinished();
+        return finished.remove(key(coordX, coordY));
+    }
+
+    /**
+     * Checks if a chunk is requested or finished.
+     * @param coordX the chunk coordinate
+     * @param coordY the chunk coordinate
+     * @return
+     */
+    public boolean isRequested(int coordX, int coordY){
+        long key = key(coordX, coordY);
+        if (finished.containsKey(key) || inFlight.containsKey(key)) return true;
+        for (Request request : pending) {
+            if (request.key == key) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Keeps a chunk which leaves the loaded map in memory. It is used instead of the file or generator when the chunk is requested again.
+     * @param coordX the chunk coordinate
+     * @param coordY the chunk coordinate
+     * @param chunk the compressed content of the chunk
+     */
+    public void store(int coordX, int coordY, CompressedChunk chunk){
+        long key = key(coordX, coordY);
+        stored.put(key, chunk);
+        //older versions of the chunk are outdated now
+        finished.remove(key);
+        Future<Chunk> future = inFlight.remove(key);
+        if (future != null) future.cancel(true);
+    }
+    
+    /**
+     * Drops every request and finished chunk which is further away from the center than the radius. Chunks which are currently in work are finished nevertheless.
+     * @param centerX the chunk coordinate of the center
+     * @param centerY the chunk coordinate of the center
+     * @param radius the distance in chunks which is kept. Use 1 to keep only the loaded nine chunks. Prefetched chunks need 2.
+     */
+    public void retain(int centerX, int centerY, int radius){
+        for (Iterator<Request> it = pending.iterator(); it.hasNext();) {
+            if (!isInRadius(it.next().key, centerX, centerY, radius)) it.remove();
+        }
+        for (Iterator<Long> it = finished.keySet().iterator(); it.hasNext();) {
+            if (!isInRadius(it.next(), centerX, centerY, radius)) it.remove();
+        }
+    }
+
+    /**
+     * Moves the chunks of finished workers into the list of finished chunks and submits waiting requests.
+     */
+    private void collectFinished(){
+        for (Iterator<java.util.Map.Entry<Long, Future<Chunk>>> it = inFlight.entrySet().iterator(); it.hasNext();) {
+            java.util.Map.Entry<Long, Future<Chunk>> entry = it.next();
+            if (entry.getValue().isDone()) {
+                it.remove();
+                try {
+                    finished.put(entry.getKey(), entry.getValue().get());
+                } catch (InterruptedException ex) {
+                    Gdx.app.error("ChunkProvider", "Preparing of chunk was interrupted: "+ex);
+                } catch (ExecutionException ex) {
+                    Gdx.app.error("ChunkProvider", "Preparing of chunk failed: "+ex.getCause());
+                }
+            }
+        }
+        submitPending();
+    }
+
+    /**
+     * Gives waiting requests to the workers until the limit is reached.
+     */
+    private void submitPending(){
+        while (inFlight.size() < maxInFlight && !pending.isEmpty()) {
+            final Request request = pending.poll();
+            final CompressedChunk compressed = stored.get(request.key);
+            inFlight.put(request.key, workers.submit(new Callable<Chunk>() {
+                @Override
+                public Chunk call() {
+                    if (compressed != null)
+                        return new Chunk(request.coordX, request.coordY, compressed.decompress());
+                    else
+                        return new Chunk(request.pos, request.coordX, request.coordY, newMap);
+                }
+            }));
+        }
+    }
+
+    /**
+     * Stops the workers.
+     */
+    public void dispose(){
+        workers.shutdownNow();
+    }
+
+    /**
+     * The amount of chunks which are prepared at the same time.
+     * @return
+     */
+    public static int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Set the amount of chunks which are prepared at the same time.
+     * @param maxInFlight at least 1
+     */
+    public static void setMaxInFlight(int maxInFlight) {
+        ChunkProvider.maxInFlight = Math.max(1, maxInFlight);
+    }
+
+    /**
+     * The amount of compressed chunks which are kept in memory.
+     * @return
+     */
+    public static int getMaxStored() {
+        return maxStored;
+    }
+
+    /**
+     * Set the amount of compressed chunks which are kept in memory. When there are more the least recently used chunk is dropped.
+     * @param maxStored
+     */
+    public static void setMaxStored(int maxStored) {
+        ChunkProvider.maxStored = maxStored;
+    }
+
+    private static boolean isInRadius(long key, int centerX, int centerY, int radius){
+        int coordX = (int) (key >> 32);
+        int coordY = (int) key;
+        return Math.abs(coordX-centerX) <= radius && Math.abs(coordY-centerY) <= radius;
+    }
+
+    private static long key(int coordX, int coordY){
+        return ((long) coordX << 32) | (coordY & 0xffffffffL);
+    }
+
+    /**
+     * A request for a chunk which waits for a worker.
+     */
+    private static class Request {
+        private final int pos, coordX, coordY;
+        private final long key;
+
+        Request(int pos, int coordX, int coordY) {
+            this.pos = pos;
+            this.coordX = coordX;
+            this.coordY = coordY;
+            this.key = key(coordX, coordY);
+        }
+    }
+}
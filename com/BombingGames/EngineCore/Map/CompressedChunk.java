@@ -0,0 +1,226 @@
+package com.BombingGames.EngineCore.Map;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ *A chunk compressed with a palette and run-length encoded layers. Most chunks consist of long runs of few different blocks, so this is much smaller than the raw arrays.
+ * It is used by the binary file format (version 2) and to keep chunks in memory which are not in the nine loaded chunks.<br>
+ * Every different id/value pair of the chunk is stored once in the palette. Every layer (z) is a list of runs. A run is a palette index and the amount of cells in the order of the text format (row by row (y), then x).
+ * @author Benedikt Vogler
+ */
+public class CompressedChunk {
+    private final int blocksX, blocksY, blocksZ;
+    /**Every different block of the chunk as id&lt;&lt;8 | value.*/
+    private final int[] palette;
+    /**The palette index of every run.*/
+    private final short[] runIndices;
+    /**The length of every run.*/
+    private final short[] runLengths;
+    /**Where the runs of a layer start. The runs of layer z are from layerStart[z] to layerStart[z+1].*/
+    private final int[] layerStart;
+
+    private CompressedChunk(int blocksX, int blocksY, int blocksZ, int[] palette, short[] runIndices, short[] runLengths, int[] layerStart) {
+        this.blocksX = blocksX;
+        this.blocksY = blocksY;
+        this.blocksZ = blocksZ;
+        this.palette = palette;
+        this.runIndices = runIndices;
+        this.runLengths = runLengths;
+        this.layerStart = layerStart;
+    }
+
+    /**
+     * Compresses a chunk.
+     * @param chunkfile the raw data
+     * @return
+     */
+    public static CompressedChunk compress(ChunkFile chunkfile){
+        int blocksX = chunkfile.getBlocksX();
+        int blocksY = chunkfile.getBlocksY();
+        int blocksZ = chunkfile.getBlocksZ();
+
+        int[] palette = new int[16];
+        int paletteSize = 0;
+        short[] runIndices = new short[64];
+        short[] runLengths = new short[64];
+        int runs = 0;
+        int[] layerStart = new int[blocksZ+1];
+
+        for (int z = 0; z < blocksZ; z++) {
+            layerStart[z] = runs;
+            int lastEntry = -1;
+            for (int y = 0; y < blocksY; y++) {
+                for (int x = 0; x < blocksX; x++) {
+                    int entry = (chunkfile.getId(x, y, z) << 8) | (chunkfile.getValue(x, y, z) & 0xff);
+                    if (entry == lastEntry && runLengths[runs-1] < Short.MAX_VALUE) {
+                        runLengths[runs-1]++;
+                    } else {
+                        //find the entry in the palette
+                        int index = 0;
+                        while (index < paletteSize && palette[index] != entry) index++;
+                        if (index == paletteSize) {
+                            if (paletteSize == palette.length) palette = Arrays.copyOf(palette, paletteSize*2);
+                            palette[paletteSize++] = entry;
+                        }
+
+                        if (runs == runIndices.length) {
+                            runIndices = Arrays.copyOf(runIndices, runs*2);
+                            runLengths = Arrays.copyOf(runLengths, runs*2);
+                        }
+                        runIndices[runs] = (short) index;
+                        runLengths[runs] = 1;
+                        runs++;
+                        lastEntry = entry;
+                    }
+                }
+            }
+        }
+        layerStart[blocksZ] = runs;
+
+        return new CompressedChunk(
+            blocksX, blocksY, blocksZ,
+            Arrays.copyOf(palette, paletteSize),
+            Arrays.copyOf(runIndices, runs),
+            Arrays.copyOf(runLengths, runs),
+            layerStart
+        );
+    }
+
+    /**
+     * Decompresses the chunk.
+     * @return the raw data
+     */
+    public ChunkFile decompress(){
+        ChunkFile chunkfile = new ChunkFile(blocksX, blocksY, blocksZ);
+        for (int z = 0; z < blocksZ; z++) {
+            int x = 0;
+            int y = 0;
+            for (int run = layerStart[z]; run < layerStart[z+1]; run++) {
+                int entry = palette[runIndices[run]];
+                for (int i = 0; i < runLengths[run]; i++) {
+                    chunkfile.set(x, y, z, entry >> 8, (byte) entry);
+                    x++;
+                    if (x == blocksX) {
+                        x = 0;
+                        y++;
+                    }
+                }
+            }
+        }
+        return chunkfile;
+    }
+
+    /**
+     * Reads the body of a version 2 binary chunk file. The header must already be read.
+     * Every size is checked against the remaining bytes before it is read, so a truncated or corrupt file causes an IOException.
+     * @param buffer positioned after the header
+     * @param blocksX
+     * @param blocksY
+     * @param blocksZ
+     * @return
+     * @throws IOException if the data is not valid
+     */
+    public static CompressedChunk read(ByteBuffer buffer, int blocksX, int blocksY, int blocksZ) throws IOException{
+        try {
+            checkRemaining(buffer, 4);
+            int paletteSize = buffer.getInt();
+            if (paletteSize < 0)
+                throw new IOException("Invalid palette size: "+paletteSize);
+            checkRemaining(buffer, paletteSize*4L + 4);
+            int[] palette = new int[paletteSize];
+            buffer.asIntBuffer().get(palette);
+            buffer.position(buffer.position() + paletteSize*4);
+
+            int runs = buffer.getInt();
+            if (runs < 0)
+                throw new IOException("Invalid amount of runs: "+runs);
+            //the layer starts, the palette indices and the lengths of the runs
+            checkRemaining(buffer, (blocksZ+1)*4L + runs*4L);
+            int[] layerStart = new int[blocksZ+1];
+            for (int z = 0; z <= blocksZ; z++) {
+                layerStart[z] = buffer.getInt();
+            }
+            short[] runIndices = new short[runs];
+            short[] runLengths = new short[runs];
+            buffer.asShortBuffer().get(runIndices);
+            buffer.position(buffer.position() + runs*2);
+            buffer.asShortBuffer().get(runLengths);
+            buffer.position(buffer.position() + runs*2);
+
+            //check the runs so that decompressing can not fail
+            if (layerStart[0] != 0 || layerStart[blocksZ] != runs)
+                throw new IOException("Invalid layer start.");
+            for (int z = 0; z < blocksZ; z++) {
+                if (layerStart[z] > layerStart[z+1])
+                    throw new IOException("Invalid layer start in layer "+z);
+            }
+            for (int z = 0; z < blocksZ; z++) {
+                long cells = 0;
+                for (int run = layerStart[z]; run < layerStart[z+1]; run++) {
+                    if (runIndices[run] < 0 || runIndices[run] >= paletteSize || runLengths[run] < 0)
+                        throw new IOException("Invalid run "+run);
+                    cells += runLengths[run];
+                }
+                if (cells > (long) blocksX*blocksY)
+                    throw new IOException("Layer "+z+" is too long.");
+            }
+            return new CompressedChunk(blocksX, blocksY, blocksZ, palette, runIndices, runLengths, layerStart);
+        } catch (BufferUnderflowException ex) {
+            //should not happen because of the checks, but it must not escape into the loading threads
+            throw new IOException("Chunk file is truncated.", ex);
+        }
+    }
+    
+    /**
+     * Checks if enough bytes are left to read the next part.
+     * @param buffer
+     * @param bytes the size of the next part
+     * @throws IOException if the buffer is too short
+     */
+    private static void checkRemaining(ByteBuffer buffer, long bytes) throws IOException{
+        if (buffer.remaining() < bytes)
+            throw new IOException("Chunk file is truncated: "+bytes+" bytes needed, "+buffer.remaining()+" left.");
+    }
+
+    /**
+     * The size of the data written by <i>write</i> in bytes.
+     * @return
+     */
+    public int getSize(){
+        return 4 + palette.length*4 + 4 + layerStart.length*4 + runIndices.length*4;
+    }
+
+    /**
+     * Writes the body of a version 2 binary chunk file.
+     * @param buffer with at least <i>getSize()</i> bytes remaining
+     */
+    public void write(ByteBuffer buffer){
+        buffer.putInt(palette.length);
+        buffer.asIntBuffer().put(palette);
+        buffer.position(buffer.position() + palette.length*4);
+        buffer.putInt(runIndices.length);
+        for (int start : layerStart) {
+            buffer.putInt(start);
+        }
+        buffer.asShortBuffer().put(runIndices);
+        buffer.position(buffer.position() + runIndices.length*2);
+        buffer.asShortBuffer().put(runLengths);
+        buffer.position(buffer.position() + runLengths.length*2);
+    }
+
+    public int getBlocksX() {
+        return blocksX;
+    }
+
+    public int getBlocksY() {
+        return blocksY;
+    }
+
+    public int getBlocksZ() {
+        return blocksZ;
+    }
+
+}
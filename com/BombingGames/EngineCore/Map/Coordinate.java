@@ -53,6 +53,22 @@ public class Coordinate extends AbstractPosition {
         setHeight(height);
     }
     
+    /**
+     * Creates a coordinate relative to a custom reference. Use this when the currently loaded map should not be read, e.g. on a worker thread.
+     * @param x The x value relative to the reference.
+     * @param y The y value relative to the reference.
+     * @param z The z value as coordinate.
+     * @param topleftX the x coordinate of the top left chunk of the reference
+     * @param topleftY the y coordinate of the top left chunk of the reference
+     */
+    public Coordinate(int x, int y, int z, int topleftX, int topleftY) {
+        super(topleftX, topleftY);
+        
+        this.x = x;
+        this.y = y;
+        setHeight(z*Block.GAME_DIMENSION);
+    }
+    
     /**
      * Creates a new coordinate from an existing coordinate
      * @param coord the Coordinate
@@ -243,7 +259,8 @@ public class Coordinate extends AbstractPosition {
      * @return true when hiding the past Block
      */
     public boolean hidingPastBlock(){
-        return (getBlock().hasSides() && ! getBlock().isTransparent() && ! hasOffset());
+        Block block = Controller.getMap().getStoredBlock(getRelX(), getRelY(), getZ());
+        return (block.hasSides() && ! block.isTransparent() && ! hasOffset());
     }
     
     /** @return a copy of this coordinate */
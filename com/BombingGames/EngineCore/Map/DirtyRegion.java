@@ -0,0 +1,102 @@
+package com.BombingGames.EngineCore.Map;
+
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ *Collects the parts of the map which changed since the last recalc, so that only they have to be recalculated.
+ * The cells are stored as indices of the storage, so they stay valid when the chunks are moved by a chunk switch.
+ * @author Benedikt Vogler
+ */
+public class DirtyRegion {
+    /**The changed cells.*/
+    private final IntArray cells = new IntArray();
+    /**The changed columns as the index of their bottom cell. Every cell of the column changed.*/
+    private final IntArray columns = new IntArray();
+    /**Did a block change or only offsets?*/
+    private boolean blocksChanged;
+
+    /**
+     * Marks a cell as changed because it got a new block.
+     * @param index the linear index in the storage
+     */
+    public void addCell(int index){
+        cells.add(index);
+        blocksChanged = true;
+    }
+
+    /**
+     * Marks a cell as changed because an offset appeared or disappeared. This only matters for the raytracing.
+     * @param index the linear index in the storage
+     */
+    public void addOffsetChange(int index){
+        cells.add(index);
+    }
+
+    /**
+     * Marks many cells as changed because they got a new block.
+     * @param indices the linear indices in the storage
+     */
+    public void addCells(IntArray indices){
+        if (indices.size == 0) return;
+        cells.addAll(indices);
+        blocksChanged = true;
+    }
+    
+    /**
+     * Marks many cells as changed because an offset appeared or disappeared.
+     * @param indices the linear indices in the storage
+     */
+    public void addOffsetChanges(IntArray indices){
+        cells.addAll(indices);
+    }
+
+    /**
+     * Marks every cell of a column as changed.
+     * @param index the linear index of the bottom cell of the column
+     */
+    public void addColumn(int index){
+        columns.add(index);
+        blocksChanged = true;
+    }
+
+    /**
+     * The changed cells. Do not modify the array.
+     * @return the indices in the storage
+     */
+    public IntArray getCells() {
+        return cells;
+    }
+
+    /**
+     * The changed columns. Do not modify the array.
+     * @return the indices of the bottom cells in the storage
+     */
+    public IntArray getColumns() {
+        return columns;
+    }
+
+    /**
+     * Is there nothing to recalculate?
+     * @return
+     */
+    public boolean isEmpty(){
+        return cells.size == 0 && columns.size == 0;
+    }
+
+    /**
+     * Did a block change? When false only offsets changed, which do not change the light.
+     * @return
+     */
+    public boolean hasBlockChanges(){
+        return blocksChanged;
+    }
+
+    /**
+     * Forgets every change. Call this after the recalc.
+     */
+    public void clear(){
+        cells.clear();
+        columns.clear();
+        blocksChanged = false;
+    }
+}
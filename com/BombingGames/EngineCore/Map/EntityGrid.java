@@ -0,0 +1,193 @@
+package com.BombingGames.EngineCore.Map;
+
+import com.BombingGames.EngineCore.Controller;
+import com.BombingGames.EngineCore.Gameobjects.AbstractEntity;
+import com.BombingGames.EngineCore.Gameobjects.AbstractGameObject;
+import com.BombingGames.EngineCore.WECamera;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntMap;
+
+/**
+ *A uniform grid over the game world which knows the entitys in every cell of the grid, so searching entitys in an area only visits the cells of the area and not every entity.<br>
+ * The grid uses absolute positions, so it stays valid when the map switches its chunks. Only the cells which contain entitys exist.
+ * @author Benedikt Vogler
+ */
+public class EntityGrid {
+    /**The size of a grid cell in game units. A grid cell covers two blocks in x and four rows in y.*/
+    public static final int CELLSIZE = 2*AbstractGameObject.GAME_DIAGSIZE;
+    /**The grid cell of an entity which is not in the grid.*/
+    public static final int NOCELL = Integer.MIN_VALUE;
+    /**The highest position of a grid cell in x and y. The keys of the cells closer to the origin are unique.*/
+    private static final int MAXCELL = (1 << 14) - 1;
+
+    /**The entitys of every grid cell. Indexed by the key of the cell.*/
+    private final IntMap<Array<AbstractEntity>> cells = new IntMap<Array<AbstractEntity>>();
+    /**Reused lists of cells which became empty.*/
+    private final Array<Array<AbstractEntity>> emptyCells = new Array<Array<AbstractEntity>>();
+    private int size;
+
+    /**
+     * The position of the grid cell which contains a position.
+     * @param pos absolute position in game units
+     * @return
+     */
+    private static int cell(float pos){
+        int cell = (int) Math.floor(pos / CELLSIZE);
+        if (cell > MAXCELL) return MAXCELL;
+        if (cell < -MAXCELL) return -MAXCELL;
+        return cell;
+    }
+
+    /**
+     * The key of a grid cell.
+     * @param cellX
+     * @param cellY
+     * @return
+     */
+    private static int key(int cellX, int cellY){
+        return cellX << 16 | (cellY & 0xffff);
+    }
+
+    /**
+     * The key of the grid cell which contains a point.
+     * @param point
+     * @return
+     */
+    private static int key(Point point){
+        return key(cell(point.getAbsX()), cell(point.getAbsY()));
+    }
+
+    /**
+     * Registers an entity at its position.
+     * @param entity
+     */
+    public void add(AbstractEntity entity){
+        int key = key(entity.getPos());
+        Array<AbstractEntity> cell = cells.get(key);
+        if (cell == null) {
+            cell = emptyCells.size > 0 ? emptyCells.pop() : new Array<AbstractEntity>(false, 8);
+            cells.put(key, cell);
+        }
+        cell.add(entity);
+        entity.setGridCell(key);
+        size++;
+    }
+
+    /**
+     * Removes an entity from the grid.
+     * @param entity
+     */
+    public void remove(AbstractEntity entity){
+        int key = entity.getGridCell();
+        if (key == NOCELL) return;
+        Array<AbstractEntity> cell = cells.get(key);
+        if (cell != null && cell.removeValue(entity, true)) {
+            size--;
+            if (cell.size == 0) {
+                cells.remove(key);
+                emptyCells.add(cell);
+            }
+        }
+        entity.setGridCell(NOCELL);
+    }
+
+    /**
+     * Moves an entity into the grid cell of its position if it left its grid cell. Call this when an entity moved.
+     * @param entity an entity which is in the grid
+     */
+    public void update(AbstractEntity entity){
+        if (entity.getGridCell() != NOCELL && entity.getGridCell() != key(entity.getPos())) {
+            remove(entity);
+            add(entity);
+        }
+    }
+
+    /**
+     * Finds every entity in a rectangle of the game world.
+     * @param minX absolute position in game units
+     * @param minY absolute position in game units
+     * @param maxX absolute position in game units
+     * @param maxY absolute position in game units
+     * @param result the entitys are added to this list
+     * @return the result
+     */
+    public Array<AbstractEntity> query(float minX, float minY, float maxX, float maxY, Array<AbstractEntity> result){
+        int maxCellX = cell(maxX);
+        int maxCellY = cell(maxY);
+        for (int cellX = cell(minX); cellX <= maxCellX; cellX++) {
+            for (int cellY = cell(minY); cellY <= maxCellY; cellY++) {
+                Array<AbstractEntity> cell = cells.get(key(cellX, cellY));
+                if (cell == null) continue;
+                for (int i = 0; i < cell.size; i++) {
+                    AbstractEntity entity = cell.get(i);
+                    Point pos = entity.getPos();
+                    if (pos.getAbsX() >= minX && pos.getAbsX() <= maxX && pos.getAbsY() >= minY && pos.getAbsY() <= maxY)
+                        result.add(entity);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds every entity in a sphere.
+     * @param center the center of the sphere
+     * @param radius in game units
+     * @param result the entitys are added to this list
+     * @return the result
+     */
+    public Array<AbstractEntity> queryRadius(Point center, float radius, Array<AbstractEntity> result){
+        int start = result.size;
+        query(center.getAbsX()-radius, center.getAbsY()-radius, center.getAbsX()+radius, center.getAbsY()+radius, result);
+
+        //remove the entitys in the corners of the rectangle
+        for (int i = result.size-1; i >= start; i--) {
+            Point pos = result.get(i).getPos();
+            float dX = pos.getAbsX() - center.getAbsX();
+            float dY = pos.getAbsY() - center.getAbsY();
+            float dZ = pos.getHeight() - center.getHeight();
+            if (dX*dX + dY*dY + dZ*dZ > radius*radius) result.removeIndex(i);
+        }
+        return result;
+    }
+
+    /**
+     * Finds every entity in the area a camera renders. This is the area of the blocks the camera renders and a block around it.
+     * @param camera
+     * @param result the entitys are added to this list
+     * @return the result
+     */
+    public Array<AbstractEntity> queryCamera(WECamera camera, Array<AbstractEntity> result){
+        Map map = Controller.getMap();
+        int[] reference = map.getChunkCoords(0);
+        float originX = reference[0] * Chunk.getGameWidth();
+        float originY = reference[1] * Chunk.getGameDepth();
+        return query(
+            originX + (camera.getLeftBorder()-1) * AbstractGameObject.GAME_DIAGSIZE,
+            originY + (camera.getTopBorder()-2) * AbstractGameObject.GAME_DIAGSIZE/2,
+            originX + (camera.getRightBorder()+2) * AbstractGameObject.GAME_DIAGSIZE,
+            originY + (camera.getBottomBorder()+3) * AbstractGameObject.GAME_DIAGSIZE/2,
+            result
+        );
+    }
+
+    /**
+     * Removes every entity.
+     */
+    public void clear(){
+        for (Array<AbstractEntity> cell : cells.values()) {
+            for (int i = 0; i < cell.size; i++)
+                cell.get(i).setGridCell(NOCELL);
+        }
+        cells.clear();
+        size = 0;
+    }
+
+    /**
+     * The amount of entitys in the grid.
+     * @return
+     */
+    public int size(){
+        return size;
+    }
+}
@@ -0,0 +1,114 @@
+package com.BombingGames.EngineCore.Map;
+
+import com.BombingGames.EngineCore.Gameobjects.AbstractEntity;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ *Sorts the entitys by their type. Every entity is in the list of its class, of every superclass and of every interface it implements, so finding every entity of a type needs no search.
+ * @author Benedikt Vogler
+ */
+public class EntityTypeIndex {
+    /**The entitys of every type.*/
+    private final HashMap<Class<?>, ArrayList<AbstractEntity>> buckets = new HashMap<Class<?>, ArrayList<AbstractEntity>>();
+    /**The read-only view of every bucket.*/
+    private final HashMap<Class<?>, List<AbstractEntity>> views = new HashMap<Class<?>, List<AbstractEntity>>();
+    /**The buckets of every class of an entity, so the types are only searched once per class.*/
+    private final HashMap<Class<?>, ArrayList<AbstractEntity>[]> bucketsOfClass = new HashMap<Class<?>, ArrayList<AbstractEntity>[]>();
+
+    /**
+     * Adds an entity to the lists of its types.
+     * @param entity
+     */
+    public void add(AbstractEntity entity){
+        for (ArrayList<AbstractEntity> bucket : getBuckets(entity.getClass()))
+            bucket.add(entity);
+    }
+
+    /**
+     * Removes every entity which should be destroyed from every list. Every list is compacted in one pass, so the cost does not depend on how many entitys are removed.
+     */
+    public void removeDestroyed(){
+        for (ArrayList<AbstractEntity> bucket : buckets.values()) {
+            int kept = 0;
+            for (int i = 0; i < bucket.size(); i++) {
+                AbstractEntity entity = bucket.get(i);
+                if (!entity.shouldBeDestroyed()) {
+                    if (kept != i) bucket.set(kept, entity);
+                    kept++;
+                }
+            }
+            if (kept < bucket.size())
+                bucket.subList(kept, bucket.size()).clear();
+        }
+    }
+    
+    /**
+     * Returns every entity of a type. The list is not copied, it changes when entitys are added or removed.
+     * @param <type>
+     * @param type a class or interface
+     * @return a read-only list in the order the entitys were added
+     */
+    @SuppressWarnings("unchecked")
+    public <type> List<type> get(Class<type> type){
+        getBucket(type);
+        return (List<type>) views.get(type);
+    }
+
+    /**
+     * Removes every entity.
+     */
+    public void clear(){
+        for (ArrayList<AbstractEntity> bucket : buckets.values())
+            bucket.clear();
+    }
+
+    /**
+     * Returns the list of a type. It is created if it does not exist yet.
+     * @param type
+     * @return
+     */
+    private ArrayList<AbstractEntity> getBucket(Class<?> type){
+        ArrayList<AbstractEntity> bucket = buckets.get(type);
+        if (bucket == null) {
+            bucket = new ArrayList<AbstractEntity>();
+            buckets.put(type, bucket);
+            views.put(type, Collections.unmodifiableList(bucket));
+        }
+        return bucket;
+    }
+
+    /**
+     * Returns the lists of every type of a class.
+     * @param entityClass
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    private ArrayList<AbstractEntity>[] getBuckets(Class<?> entityClass){
+        ArrayList<AbstractEntity>[] result = bucketsOfClass.get(entityClass);
+        if (result == null) {
+            ArrayList<Class<?>> types = new ArrayList<Class<?>>();
+            collectTypes(entityClass, types);
+            result = new ArrayList[types.size()];
+            for (int i = 0; i < result.length; i++)
+                result[i] = getBucket(types.get(i));
+            bucketsOfClass.put(entityClass, result);
+        }
+        return result;
+    }
+
+    /**
+     * Collects a class, its superclasses and every interface.
+     * @param type
+     * @param types the types are added to this list if they are not already in it
+     */
+    private static void collectTypes(Class<?> type, ArrayList<Class<?>> types){
+        if (type == null || types.contains(type)) return;
+        types.add(type);
+        collectTypes(type.getSuperclass(), types);
+        for (Class<?> implemented : type.getInterfaces())
+            collectTypes(implemented, types);
+    }
+}
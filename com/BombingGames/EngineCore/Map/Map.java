@@ -1,525 +1,1021 @@
-package com.BombingGames.EngineCore.Map;
-
-import com.BombingGames.EngineCore.Controller;
-import com.BombingGames.EngineCore.Gameobjects.AbstractEntity;
-import com.BombingGames.EngineCore.Gameobjects.AbstractGameObject;
-import com.BombingGames.EngineCore.Gameobjects.Block;
-import com.badlogic.gdx.Gdx;
-import java.util.ArrayList;
-
-/**
- *A map stores nine chunks as part of a bigger map. It also contains the entities.
- * @author Benedikt Vogler
- */
-public class Map {
-    /**
-     * The gravity constant in m/s^2
-     */
-    public static final float GRAVITY = 9.81f;
-    /**
-     *Set if the map should load or generate new chunks when the camera reaches an end of the map.
-     */
-    public final static boolean ENABLECHUNKSWITCH = true;
-    
-    private static int blocksX, blocksY, blocksZ;
-        
-    /**in which direction is the world spinning? This is needed for the light engine.
-     * WEST->SOUTH->EAST = 0
-      * SOUTH->WEST->NORTH = -90
-      * EAST->NORTH->WEST = -180
-       *NORTH->EAST->SOUT = -270
-       **/
-    private int worldSpinDirection;
-    
-    private final boolean newMap;
-    
-    /**A list which has all current nine chunk coordinates in it.*/
-    private final int[][] coordlist = new int[9][2];
-    
-    /** the map data are the blocks in their cells */
-    private Cell[][][] data;
-    
-    /** every entity on the map is stored in this field */
-    private final ArrayList<AbstractEntity> entitylist = new ArrayList<AbstractEntity>();
-        
-    /**
-     *Creates an empty  map. Fill the map with fillWithBlocks(boolean load);
-     * @param newMap when "true" a new map will be generated, when "false" a map will be loaded from disk 
-     */
-    public Map(boolean newMap){
-        this(newMap,0);
-    }  
-    
-    /**
-     * Creates an empty map. Fill the map with fillWithBlocks(boolean load);
-     * @param newMap when "true" a new map will be generated, when "false" a map will be loaded from disk 
-     * @param worldSpinDirection the angle of the "morning" (0° is left).
-     * @see fillWithBlocks(boolean load)
-     */
-    public Map(boolean newMap, int worldSpinDirection) {
-        Gdx.app.debug("Map","Should the Engine generate a new map: "+newMap);
-        this.newMap = newMap;
-        this.worldSpinDirection = worldSpinDirection;
-        
-        if (!newMap) Chunk.readMapInfo();
-        
-        //save chunk size, which are now loaded
-        blocksX = Chunk.getBlocksX()*3;
-        blocksY = Chunk.getBlocksY()*3;
-        blocksZ = Chunk.getBlocksZ();
-        data = new Cell[blocksX][blocksY][blocksZ];//create Array where the data is stored
-    }
-    
-    /**
-     * Fill the data array of the map with blocks. Also resets the cellOffset.
-     */
-    public void fillWithBlocks(){
-        Gdx.app.debug("Map","Filling the map with air cells...");
-        for (Cell[][] x : data) {
-            for (Cell[] y : x) {
-                for (int z = 0; z < y.length; z++) {
-                    y[z] = new Cell();
-                }
-            }   
-        }
-        
-        //Fill the nine chunks
-        int chunkpos = 0;
-        
-        for (int y=-1; y < 2; y++)
-            for (int x=-1; x < 2; x++){
-                coordlist[chunkpos][0] = x;
-                coordlist[chunkpos][1] = y;  
-                insertChunk(chunkpos, new Chunk(chunkpos, x, y, newMap));
-                chunkpos++;
-        }
-       
-        Gdx.app.log("Map","...Finished filling the map");
-    }
-    
-     /**
-     * Returns the amount of Blocks inside the map in x-direction.
-     * @return
-     */
-    public static int getBlocksX() {
-        return blocksX;
-    }
-
-    /**
-     * Returns the amount of Blocks inside the map in y-direction.
-     * @return
-     */
-    public static int getBlocksY() {
-        return blocksY;
-    }
-
-    /**
-     * Returns the amount of Blocks inside the map in z-direction.
-     * @return 
-     */
-    public static int getBlocksZ() {
-        return blocksZ;
-    }
-    
-    
-    /**
-     * Copies an array with three dimensions. Code by Kevin Brock from http://stackoverflow.com/questions/2068370/efficient-system-arraycopy-on-multidimensional-arrays
-     * @param array
-     * @return The chunk of the array-
-     */
-    private static Cell[][][] copyOf3Dim(Cell[][][] array) {
-        Cell[][][] copy;
-        copy = new Cell[array.length][][];
-        for (int i = 0; i < array.length; i++) {
-            copy[i] = new Cell[array[i].length][];
-            for (int j = 0; j < array[i].length; j++) {
-                copy[i][j] = new Cell[array[i][j].length];
-                System.arraycopy(array[i][j], 0, copy[i][j], 0, 
-                    array[i][j].length);
-            }
-        }
-        return copy;
-    } 
-        
-    /**
-     * Get the data of the map
-     * @return
-     */
-    public Cell[][][] getData() {
-        return data;
-    }
-    
-    /**
-     * Reorgnanises the map and sets the new middle chunk to param newmiddle.
-     * Move all chunks when loading or creating a new piece of the map
-     *    |0|1|2|
-     *     -------------
-     *    |3|4|5|
-     *     -------------
-     *    |6|7|8|
-     * @param newmiddle newmiddle is 1, 3, 5 or 7
-     */
-    public void setCenter(int newmiddle){
-        if (ENABLECHUNKSWITCH){
-            Gdx.app.log("Map","ChunkSwitch:"+newmiddle);
-            if (newmiddle==1 || newmiddle==3 || newmiddle==5 || newmiddle==7) {
-
-                //make a chunk of the data
-                Cell blockData_copy[][][] = copyOf3Dim(data);
-                
-                for (int pos=0; pos<9; pos++){
-                    //refresh coordinates
-                    coordlist[pos][0] += (newmiddle == 3 ? -1 : (newmiddle == 5 ? 1 : 0));
-                    coordlist[pos][1] += (newmiddle == 1 ? -1 : (newmiddle == 7 ? 1 : 0));
-
-                    Chunk chunk;
-                    if (isMovingChunkPossible(pos, newmiddle)){
-                        chunk = copyChunk(blockData_copy, pos - 4 + newmiddle);
-                    } else {
-                        chunk = new Chunk(pos,
-                                    coordlist[pos][0],
-                                    coordlist[pos][1],
-                                    newMap
-                                );
-                    }
-                    insertChunk(pos,chunk);
-                }
-
-                Controller.requestRecalc();
-            } else {
-                Gdx.app.log("Map","setCenter was called with center:"+newmiddle);
-            }
-        }
-    }
-    
-    /**
-     * checks if the number can be reached by moving the net in a newmiddle
-     * @param pos the position you want to check
-     * @param newmiddle the newmiddle the chunkswitch is made to
-     * @return 
-     */
-     private boolean isMovingChunkPossible(int pos, int newmiddle){
-        boolean result = true; 
-        switch (newmiddle){
-            case 1: if ((pos==0) || (pos==1) || (pos==2)) result = false;
-            break;
-            
-            case 3: if ((pos==0) || (pos==3) || (pos==6)) result = false;
-            break;  
-                
-            case 5: if ((pos==2) || (pos==5) || (pos==8)) result = false;
-            break;
-                
-            case 7: if ((pos==6) || (pos==7) || (pos==8)) result = false;
-            break;
-        } 
-        return result;
-    }
-     
-    /**
-     * Get a chunk out of a map (should be a chunk of a part of the field data)
-     * @param cellData The data where you want to read from
-     * @param offsetData the offset data
-     * @param pos The chunk number where the chunk is located
-     */ 
-    private Chunk copyChunk(Cell[][][] cellData, int pos) {
-        Chunk chunk = new Chunk();
-        //copy the data in two loops and then do an arraycopy
-        for (int x = Chunk.getBlocksX()*(pos % 3);
-                 x < Chunk.getBlocksX()*(pos % 3+1);
-                 x++
-            )
-                for (int y = Chunk.getBlocksY()*Math.abs(pos / 3);
-                         y < Chunk.getBlocksY()*Math.abs(pos / 3+1);
-                         y++
-                    ) {
-                    System.arraycopy(
-                        cellData[x][y],                
-                        0,
-                        chunk.getData()[x-Chunk.getBlocksX()*(pos % 3)][y - Chunk.getBlocksY()*(pos / 3)],
-                        0,
-                        Chunk.getBlocksZ()
-                    );
-                }
-        return chunk;
-    }
-
-    /**
-     * Inserts a chunk in the map.
-     * @param pos The position in the grid
-     * @param chunk The chunk you want to insert
-     */
-    private void insertChunk(int pos, Chunk chunk) {
-        for (int x=0;x < Chunk.getBlocksX(); x++)
-            for (int y=0;y < Chunk.getBlocksY();y++) {
-                System.arraycopy(
-                    chunk.getData()[x][y],
-                    0,
-                    data[x+ Chunk.getBlocksX()*(pos%3)][y+ Chunk.getBlocksY()*Math.abs(pos/3)],
-                    0,
-                    Chunk.getBlocksZ()
-                );
-            }
-    }
-    
-   /**
-     *Get the coordinates of a chunk. 
-     * @param pos 
-     * @return the coordinates of the chunk
-     */
-    public int[] getChunkCoords(int pos) {
-        return coordlist[pos];
-    }
-   
-    
-    /**
-     * Returns  a Block without checking the parameters first. Good for debugging and also faster.
-     * @param x position
-     * @param y position
-     * @param z position
-     * @return the single renderobject you wanted
-     */
-    public Block getBlock(int x, int y, int z){
-        return data[x][y][z].getBlock();  
-    }
-    
-    /**
-     *
-     * @param coord
-     * @return
-     */
-    public Block getBlock(Coordinate coord){
-        return data[coord.getRelX()][coord.getRelY()][coord.getZ()].getBlock();  
-    }
-    
-     /**
-     * Returns a renderobject of the map.
-     * @param x If too high or too low, it takes the highest/deepest value possible
-     * @param y If too high or too low, it takes the highest/deepest value possible
-     * @param z If too high or too low, it takes the highest/deepest value possible
-     * @return A single Block at the wanted coordinates.
-     * @see com.BombingGames.Game.Map#getData(int, int, int) 
-     */
-    public Block getBlockClamp(int x, int y, int z){
-        if (x >= blocksX){
-            x = blocksX-1;
-            Gdx.app.error("Map","X:"+x);
-        } else if( x<0 ){
-            x = 0;
-            Gdx.app.error("Map","X:"+x);
-        }
-        
-        if (y >= blocksY){
-            y = blocksY-1;
-            Gdx.app.debug("Map","Y:"+y);
-        } else if( y < 0 ){
-            y = 0;
-            Gdx.app.error("Map","Y:"+y);
-        }
-        
-        if (z >= blocksZ){
-            z = blocksZ-1;
-            Gdx.app.error("Map","Z:"+z+">="+blocksZ);
-        } else if( z < 0 ){
-            z = 0;
-            Gdx.app.error("Map","Z:"+z+">="+blocksZ);
-        }
-        
-        return data[x][y][z].getBlock();    
-    }
-    
-    /**
-     * 
-     * @param coords
-     * @return
-     */
-    public Block getDataSafe(Coordinate coords) {
-        return getBlockClamp(coords.getRelX(), coords.getRelY(), coords.getZ());
-    }
-    
-   
-    
-
-    /**
-     * Set a block at a specific coordinate.
-     * @param x position
-     * @param y position
-     * @param z position
-     * @param block  
-     */
-    public void setData(int x, int y, int z, Block block){
-        data[x][y][z].setBlock(block);
-    }
-    
-    /**
-     * Set a block at a specific coordinate.
-     * @param coords
-     * @param block
-     */
-    public void setData(Coordinate coords, Block block) {
-        data[coords.getRelX()][coords.getRelY()][coords.getZ()].setBlock(block);
-    }
-        
-   /**
-     * Set a block with safety checks.
-     * @param coords
-     * @param block
-     */
-    public void setDataSafe(int[] coords, Block block) {       
-        if (coords[0] >= blocksX){
-            coords[0] = blocksX-1;
-        } else if( coords[0]<0 ){
-            coords[0] = 0;
-        }
-        
-        if (coords[1] >= blocksY){
-            coords[1] = blocksY-1;
-        } else if( coords[1] < 0 ){
-            coords[1] = 0;
-        }
-        
-        if (coords[2] >= blocksZ){
-            coords[2] = blocksZ-1;
-        } else if( coords[2] < 0 ){
-            coords[2] = 0;
-        }
-        
-        data[coords[0]][coords[1]][coords[2]].setBlock(block);
-    }
-    
-    /**
-     * Set a block with safety checks.
-     * @param coord 
-     * @param block
-     */
-    public void setDataSafe(Coordinate coord, Block block) {        
-        setDataSafe(new int[]{
-            coord.getRelX(),
-            coord.getRelY(),
-            coord.getZ()},
-            block
-        );
-    }
-    
-    /**
-     * a method who gives random blocks offset
-     * @param numberofblocks the amount of moved blocks
-     */
-    public void earthquake(int numberofblocks){
-        int[] x = new int[numberofblocks];
-        int[] y = new int[numberofblocks];
-        int[] z = new int[numberofblocks];
-        
-        //pick random blocks 
-        for (int i=0;i<numberofblocks;i++){
-            x[i] = (int) (Math.random()*blocksX-1);
-            y[i] = (int) (Math.random()*blocksY-1);
-            z[i] = (int) (Math.random()*blocksZ-1);
-        }
-        
-        for (int i=0;i < numberofblocks; i++){
-                //cellPos[x[i]][y[i]][z[i]][0] = (float) (Math.random()*Block.SCREEN_DEPTH2);
-                //cellPos[x[i]][y[i]][z[i]][1] = (float) (Math.random()*Block.SCREEN_DEPTH2);
-                data[x[i]][y[i]][z[i]].setCellOffset(2, (int) (Math.random()*Block.GAME_DIMENSION));//vertical shake
-            
-        }
-        Controller.requestRecalc();
-    }
-    
-    /**
-     * Returns the entitylist
-     * @return
-     */
-    public ArrayList<AbstractEntity> getEntitys() {
-        return entitylist;
-    }
-
-    /**
-     *Returns the degree of the world spin. This changes where the sun rises and falls.
-     * @return a number between 0 and 360
-     */
-    public int getWorldSpinDirection() {
-        return worldSpinDirection;
-    }
-    
-    
-    /**
-     *
-     * @param coord
-     * @return
-     */
-    public int[] getCellOffset(Coordinate coord) {
-        return data[coord.getRelX()][coord.getRelY()][coord.getZ()].getCellOffset();
-    }   
-    
-    /**
-     *Set the offset in one cell. 
-     * @param coord the cell
-     * @param field 0 = X, 1 = y, 2 = z
-     * @param value the value you want to set the field
-     */
-    public void setCelloffset(Coordinate coord, int field, int value){
-        data[coord.getRelX()][coord.getRelY()][coord.getZSafe()].setCellOffset(field, value);
-    }
-    
-    /**
-     * Find every instance of a special class e.g. find every AbstractCharacter
-     * @param <type>
-     * @param type
-     * @return a list with the entitys
-     */
-    public <type> ArrayList<type> getAllEntitysOfType(Class<type> type) {
-        ArrayList<type> list = new ArrayList<type>();
-        //e inst=(e) e.newInstance();
-
-        for (AbstractEntity entity : entitylist) {//check every entity
-            if (type.isInstance(entity)) {//if the entity has the wanted type
-                list.add((type) entity);//add it to list
-            }
-        }
-        return list;
-    }
-    
-        /**
-     *Returns a coordinate pointing to the absolute(?) center of the map. Height is half the map's height.
-     * @return
-     */
-    public static Point getCenter(){
-        return getCenter(Map.getBlocksZ()*Block.GAME_DIMENSION/2);
-    }
-    
-    /**
-     *Returns a corodinate pointing to the absolute(?) center of the map.
-     * @param height You custom height.
-     * @return
-     */
-    public static Point getCenter(float height){
-        return
-            new Point(
-                Chunk.getGameWidth()*1.5f,
-                Chunk.getGameDepth()*1.5f,
-                height,
-                false
-            );
-    }
-    
-    public static int getGameWidth(){
-        return blocksX*AbstractGameObject.GAME_DIAGSIZE;
-    }
-    
-    /**
-     * The depth of the map in game size
-     * @return 
-     */
-    public static int getGameDepth() {
-        return blocksY*AbstractGameObject.GAME_DIAGSIZE;
-    }
-    
-    /**
-     * Game size
-     * @return 
-     */
-    public static int getGameHeight(){
-        return blocksZ*AbstractGameObject.GAME_DIMENSION;
-    }
-}
\ No newline at end of file
+package com.BombingGames.EngineCore.Map;
+
+import com.BombingGames.EngineCore.Gameobjects.AbstractEntity;
+import com.BombingGames.EngineCore.Gameobjects.AbstractGameObject;
+import com.BombingGames.EngineCore.Gameobjects.Block;
+import com.BombingGames.EngineCore.LightEngine.LightPropagation;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.utils.IntArray;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *A map stores nine chunks as part of a bigger map. It also contains the entities.
+ * @author Benedikt Vogler
+ */
+public class Map {
+    /**
+     * The gravity constant in m/s^2
+     */
+    public static final float GRAVITY = 9.81f;
+    /**
+     *Set if the map should load or generate new chunks when the camera reaches an end of the map.
+     */
+    public final static boolean ENABLECHUNKSWITCH = true;
+    
+    private static int blocksX, blocksY, blocksZ;
+        
+    /**in which direction is the world spinning? This is needed for the light engine.
+     * WEST->SOUTH->EAST = 0
+      * SOUTH->WEST->NORTH = -90
+      * EAST->NORTH->WEST = -180
+       *NORTH->EAST->SOUT = -270
+       **/
+    private int worldSpinDirection;
+    
+    private final boolean newMap;
+    
+    /**A list which has all current nine chunk coordinates in it.*/
+    private final int[][] coordlist = new int[9][2];
+    
+    /** the map data are the ids and values of the cells. The storage is used as a ring buffer of chunks, so use the relative coordinates only through the getters and setters.*/
+    private final CellStorage data;
+    
+    /**The chunk column and row in the storage where the top left chunk is stored.*/
+    private int originX, originY;
+    
+    /**Lookup tables which translate a relative coordinate into the part of the linear index in the storage.*/
+    private final int[] xOffset, yOffset;
+    
+    /**Loads and generates the chunks in the background.*/
+    private final ChunkProvider chunkProvider;
+    
+    /**Marks the chunk positions which are filled with a placeholder until the chunk provider finished the chunk.*/
+    private final boolean[] waitingForChunk = new boolean[9];
+    
+    /** every entity on the map is stored in this field */
+    private final ArrayList<AbstractEntity> entitylist = new ArrayList<AbstractEntity>();
+    /**Reused to collect the entitys which are removed.*/
+    private final ArrayList<AbstractEntity> removedEntitys = new ArrayList<AbstractEntity>();
+    /**The entitys sorted by their position.*/
+    private final EntityGrid entityGrid = new EntityGrid();
+    /**The entitys sorted by their type.*/
+    private final EntityTypeIndex entityTypes = new EntityTypeIndex();
+    /**Used to change many cells at once.*/
+    private final MapEdit edit;
+    
+    /**The cells which changed since the last recalc.*/
+    private final DirtyRegion dirtyRegion = new DirtyRegion();
+        
+    /**
+     *Creates an empty  map. Fill the map with fillWithBlocks(boolean load);
+     * @param newMap when "true" a new map will be generated, when "false" a map will be loaded from disk 
+     */
+    public Map(boolean newMap){
+        this(newMap,0);
+    }  
+    
+    /**
+     * Creates an empty map. Fill the map with fillWithBlocks(boolean load);
+     * @param newMap when "true" a new map will be generated, when "false" a map will be loaded from disk 
+     * @param worldSpinDirection the angle of the "morning" (0° is left).
+     * @see fillWithBlocks(boolean load)
+     */
+    public Map(boolean newMap, int worldSpinDirection) {
+        Gdx.app.debug("Map","Should the Engine generate a new map: "+newMap);
+        this.newMap = newMap;
+        this.worldSpinDirection = worldSpinDirection;
+        
+        if (!newMap) Chunk.readMapInfo();
+        
+        //save chunk size, which are now loaded
+        blocksX = Chunk.getBlocksX()*3;
+        blocksY = Chunk.getBlocksY()*3;
+        blocksZ = Chunk.getBlocksZ();
+        data = new CellStorage(blocksX, blocksY, blocksZ);//create the storage where the data is stored
+        edit = new MapEdit(this);
+        xOffset = new int[blocksX];
+        yOffset = new int[blocksY];
+        updateIndexTables();
+        chunkProvider = new ChunkProvider(newMap);
+    }
+    
+    /**
+     * Fill the data array of the map with blocks. Also resets the cellOffset.
+     */
+    public void fillWithBlocks(){
+        Gdx.app.debug("Map","Filling the map with air cells...");
+        data.clear();
+        
+        //Fill the nine chunks
+        int chunkpos = 0;
+        
+        for (int y=-1; y < 2; y++)
+            for (int x=-1; x < 2; x++){
+                coordlist[chunkpos][0] = x;
+                coordlist[chunkpos][1] = y;  
+                insertChunk(chunkpos, new Chunk(chunkpos, x, y, newMap));
+                chunkpos++;
+        }
+       
+        Gdx.app.log("Map","...Finished filling the map");
+    }
+    
+     /**
+     * Returns the amount of Blocks inside the map in x-direction.
+     * @return
+     */
+    public static int getBlocksX() {
+        return blocksX;
+    }
+
+    /**
+     * Returns the amount of Blocks inside the map in y-direction.
+     * @return
+     */
+    public static int getBlocksY() {
+        return blocksY;
+    }
+
+    /**
+     * Returns the amount of Blocks inside the map in z-direction.
+     * @return 
+     */
+    public static int getBlocksZ() {
+        return blocksZ;
+    }
+    
+    
+    /**
+     * Get the data of the map. The chunks are stored as a ring buffer, so the indices in the storage are not the relative coordinates. Use getBlock(x, y, z) for relative access or index(x, y, z) to get the index in the storage.
+     * @return
+     */
+    public CellStorage getData() {
+        return data;
+    }
+    
+    /**
+     * Returns the edit to change many cells at once. Call <i>commit()</i> on it when you are done.
+     * @return 
+     */
+    public MapEdit edit() {
+        return edit;
+    }
+    
+    /**
+     * Returns the cells which changed since the last recalc. Every change of the blocks through the map is registered there.
+     * @return
+     */
+    public DirtyRegion getDirtyRegion() {
+        return dirtyRegion;
+    }
+    
+    /**
+     * Returns the linear index of a cell in the storage.
+     * @param x relative position
+     * @param y relative position
+     * @param z position
+     * @return 
+     */
+    public int index(int x, int y, int z){
+        return xOffset[x] + yOffset[y] + z;
+    }
+    
+    /**
+     * Returns a change counter of a chunk. It is increased every time a cell of the chunk changes in this way.
+     * @param pos the position of the chunk in the grid
+     * @param kind <i>CellStorage.GEOMETRY</i>, <i>CellStorage.VISIBILITY</i> or <i>CellStorage.LIGHT</i>
+     * @return 
+     * @see CellStorage#getChunkVersion(int, int) 
+     */
+    public int getChunkVersion(int pos, int kind){
+        return data.getChunkVersion(
+            data.getChunkSlot(index(Chunk.getBlocksX()*(pos%3), Chunk.getBlocksY()*(pos/3), 0)),
+            kind
+        );
+    }
+    
+    /**
+     * Collects the cells which can change without changing the version of their chunk: the cells of active blocks and cells with an offset.
+     * @param result the indices in the storage are written into this array
+     * @see #getRelativePosition(int, int[]) 
+     */
+    public void getDynamicCells(IntArray result){
+        data.getDynamicCells(result);
+    }
+    
+    /**
+     * Converts an index of the storage back into a relative position. This is the reverse of <i>index(x, y, z)</i>.
+     * @param index the linear index in the storage
+     * @param result an array with the length 3 where x, y and z are written to
+     */
+    public void getRelativePosition(int index, int[] result){
+        int storageX = index / (blocksY*blocksZ);
+        int storageY = (index / blocksZ) % blocksY;
+        result[0] = ((storageX / Chunk.getBlocksX() - originX + 3) % 3)*Chunk.getBlocksX() + storageX % Chunk.getBlocksX();
+        result[1] = ((storageY / Chunk.getBlocksY() - originY + 3) % 3)*Chunk.getBlocksY() + storageY % Chunk.getBlocksY();
+        result[2] = index % blocksZ;
+    }
+    
+    /**
+     * Updates every active block of the map.
+     * @param delta time since last call
+     */
+    public void updateBlocks(float delta){
+        data.updateBlocks(delta);
+    }
+    
+    /**
+     * Reorgnanises the map and sets the new middle chunk to param newmiddle.
+     * Only the three chunks which become visible are loaded. The other six chunks stay where they are in the data array, just the origin of the ring buffer is moved.
+     *    |0|1|2|
+     *     -------------
+     *    |3|4|5|
+     *     -------------
+     *    |6|7|8|
+     * @param newmiddle newmiddle is 1, 3, 5 or 7
+     */
+    public void setCenter(int newmiddle){
+        if (ENABLECHUNKSWITCH){
+            Gdx.app.log("Map","ChunkSwitch:"+newmiddle);
+            if (newmiddle==1 || newmiddle==3 || newmiddle==5 || newmiddle==7) {
+                //keep the chunks which leave the map compressed in memory
+                for (int pos=0; pos<9; pos++){
+                    boolean leaving;
+                    switch (newmiddle){
+                        case 1: leaving = pos/3==2; break;
+                        case 3: leaving = pos%3==2; break;
+                        case 5: leaving = pos%3==0; break;
+                        default: leaving = pos/3==0; break;
+                    }
+                    if (leaving) {
+                        if (!waitingForChunk[pos])
+                            chunkProvider.store(
+                                coordlist[pos][0],
+                                coordlist[pos][1],
+                                CompressedChunk.compress(getChunkFile(pos))
+                            );
+                        //the light must be removed while the chunk is still next to the chunks which stay
+                        removePointLights(pos);
+                    }
+                }
+                
+                //refresh coordinates
+                for (int pos=0; pos<9; pos++){
+                    coordlist[pos][0] += (newmiddle == 3 ? -1 : (newmiddle == 5 ? 1 : 0));
+                    coordlist[pos][1] += (newmiddle == 1 ? -1 : (newmiddle == 7 ? 1 : 0));
+                }
+                
+                //move the origin of the ring buffer
+                switch (newmiddle){
+                    case 1: originY = (originY+2) % 3;
+                    break;
+                    case 3: originX = (originX+2) % 3;
+                    break;
+                    case 5: originX = (originX+1) % 3;
+                    break;
+                    case 7: originY = (originY+1) % 3;
+                    break;
+                }
+                updateIndexTables();
+                
+                //the slots of the old chunks are reused by the new chunks
+                boolean[] waitingCopy = waitingForChunk.clone();
+                for (int pos=0; pos<9; pos++){
+                    if (isMovingChunkPossible(pos, newmiddle)){
+                        waitingForChunk[pos] = waitingCopy[pos - 4 + newmiddle];
+                    } else {
+                        Chunk chunk = chunkProvider.poll(coordlist[pos][0], coordlist[pos][1]);
+                        if (chunk == null) {
+                            //use a placeholder until the chunk is ready
+                            chunkProvider.requestNow(pos, coordlist[pos][0], coordlist[pos][1]);
+                            chunk = new Chunk();
+                            waitingForChunk[pos] = true;
+                        } else {
+                            waitingForChunk[pos] = false;
+                        }
+                        insertChunk(pos, chunk);
+                    }
+                }
+                chunkProvider.retain(coordlist[4][0], coordlist[4][1], 2);
+
+                //the new chunks are registered by insertChunk, but the cells at the opposite end of the map lost their neighbours
+                switch (newmiddle){
+                    case 1: markRow(blocksY-1); markRow(blocksY-2);
+                    break;
+                    case 3: markColumn(blocksX-1);
+                    break;
+                    case 5: markColumn(0);
+                    break;
+                    case 7: markRow(0); markRow(1);
+                    break;
+                }
+            } else {
+                Gdx.app.log("Map","setCenter was called with center:"+newmiddle);
+            }
+        }
+    }
+    
+    /**
+     * Inserts the chunks which were finished by the chunk provider. Call this at a frame boundary.
+     */
+    public void update(){
+        for (int pos=0; pos<9; pos++){
+            if (waitingForChunk[pos]) {
+                Chunk chunk = chunkProvider.poll(coordlist[pos][0], coordlist[pos][1]);
+                if (chunk != null) {
+                    Gdx.app.debug("Map","Inserting finished chunk: "+coordlist[pos][0]+","+coordlist[pos][1]);
+                    removePointLights(pos);
+                    insertChunk(pos, chunk);
+                    waitingForChunk[pos] = false;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Marks every cell with the relative x-coordinate as changed.
+     * @param x relative position
+     */
+    private void markColumn(int x){
+        for (int y=0; y < blocksY; y++)
+            dirtyRegion.addColumn(index(x, y, 0));
+    }
+    
+    /**
+     * Marks every cell with the relative y-coordinate as changed.
+     * @param y relative position
+     */
+    private void markRow(int y){
+        for (int x=0; x < blocksX; x++)
+            dirtyRegion.addColumn(index(x, y, 0));
+    }
+    
+    /**
+     * Prepares the chunks in the background which would be loaded by a chunk switch into a direction, so that the switch only has to insert them.
+     * @param directionX -1 for left, 1 for right, 0 for none
+     * @param directionY -1 for up, 1 for down, 0 for none
+     */
+    public void prefetch(int directionX, int directionY){
+        int centerX = coordlist[4][0];
+        int centerY = coordlist[4][1];
+        if (directionX != 0) {
+            for (int i=-1; i<2; i++){
+                chunkProvider.request(
+                    (directionX > 0 ? 2 : 0) + (i+1)*3,
+                    centerX + 2*directionX,
+                    centerY + i
+                );
+            }
+        }
+        if (directionY != 0) {
+            for (int i=-1; i<2; i++){
+                chunkProvider.request(
+                    (directionY > 0 ? 6 : 0) + i+1,
+                    centerX + i,
+                    centerY + 2*directionY
+                );
+            }
+        }
+        //the corner is needed when moving diagonal
+        if (directionX != 0 && directionY != 0)
+            chunkProvider.request(
+                (directionX > 0 ? 2 : 0) + (directionY > 0 ? 6 : 0),
+                centerX + 2*directionX,
+                centerY + 2*directionY
+            );
+    }
+    
+    /**
+     * Returns the chunk provider which loads and generates the chunks in the background.
+     * @return 
+     */
+    public ChunkProvider getChunkProvider() {
+        return chunkProvider;
+    }
+    
+    /**
+     * Stops the background loading.
+     */
+    public void dispose(){
+        chunkProvider.dispose();
+    }
+    
+    /**
+     * Refreshes the lookup tables after the origin of the ring buffer was moved.
+     */
+    private void updateIndexTables(){
+        for (int x = 0; x < blocksX; x++)
+            xOffset[x] = (((x / Chunk.getBlocksX() + originX) % 3) * Chunk.getBlocksX() + x % Chunk.getBlocksX()) * blocksY * blocksZ;
+        for (int y = 0; y < blocksY; y++)
+            yOffset[y] = (((y / Chunk.getBlocksY() + originY) % 3) * Chunk.getBlocksY() + y % Chunk.getBlocksY()) * blocksZ;
+    }
+    
+    /**
+     * checks if the number can be reached by moving the net in a newmiddle
+     * @param pos the position you want to check
+     * @param newmiddle the newmiddle the chunkswitch is made to
+     * @return 
+     */
+     private boolean isMovingChunkPossible(int pos, int newmiddle){
+        boolean result = true; 
+        switch (newmiddle){
+            case 1: if ((pos==0) || (pos==1) || (pos==2)) result = false;
+            break;
+            
+            case 3: if ((pos==0) || (pos==3) || (pos==6)) result = false;
+            break;  
+                
+            case 5: if ((pos==2) || (pos==5) || (pos==8)) result = false;
+            break;
+                
+            case 7: if ((pos==6) || (pos==7) || (pos==8)) result = false;
+            break;
+        } 
+        return result;
+    }
+     
+    /**
+     * Inserts a chunk in the map. The blocks with an own state are created, so that they are updated.
+     * @param pos The position in the grid
+     * @param chunk The chunk you want to insert
+     */
+    private void insertChunk(int pos, Chunk chunk) {
+        for (int x=0;x < Chunk.getBlocksX(); x++)
+            for (int y=0;y < Chunk.getBlocksY();y++) {
+                int relX = x + Chunk.getBlocksX()*(pos%3);
+                int relY = y + Chunk.getBlocksY()*(pos/3);
+                int index = index(relX, relY, 0);
+                data.setColumn(
+                    index,
+                    chunk.getIds(),
+                    chunk.getValues(),
+                    (x*Chunk.getBlocksY() + y)*Chunk.getBlocksZ()
+                );
+                dirtyRegion.addColumn(index);
+                for (int z=0; z < Chunk.getBlocksZ(); z++) {
+                    if (Block.isStateful(data.getId(index+z)))
+                        data.getBlock(index+z, new Coordinate(relX, relY, z, true));
+                }
+                data.updateColumnHeights(index);
+            }
+    }
+    
+    /**
+     * Removes the point light of a chunk and the light which was spread from it into the other chunks. <i>insertChunk</i> resets the light of the cells, so without this the light spread by the old chunk would stay in its neighbours.
+     * @param pos The position in the grid
+     */
+    private void removePointLights(int pos){
+        LightPropagation.removePointLights(
+            this,
+            Chunk.getBlocksX()*(pos%3),
+            Chunk.getBlocksX()*(pos%3+1),
+            Chunk.getBlocksY()*(pos/3),
+            Chunk.getBlocksY()*(pos/3+1)
+        );
+    }
+    
+    /**
+     * Copies the ids and values of a loaded chunk.
+     * @param pos The position in the grid
+     * @return the raw data of the chunk
+     */
+    private ChunkFile getChunkFile(int pos){
+        ChunkFile chunkfile = new ChunkFile(Chunk.getBlocksX(), Chunk.getBlocksY(), Chunk.getBlocksZ());
+        for (int x=0; x < Chunk.getBlocksX(); x++)
+            for (int y=0; y < Chunk.getBlocksY(); y++)
+                for (int z=0; z < Chunk.getBlocksZ(); z++) {
+                    int index = index(x + Chunk.getBlocksX()*(pos%3), y + Chunk.getBlocksY()*(pos/3), z);
+                    chunkfile.set(x, y, z, data.getId(index), data.getValue(index));
+                }
+        return chunkfile;
+    }
+    
+    /**
+     * Returns the id of a block without creating the block.
+     * @param x relative position
+     * @param y relative position
+     * @param z position
+     * @return 
+     */
+    public int getId(int x, int y, int z){
+        return data.getId(index(x, y, z));
+    }
+    
+   /**
+     *Get the coordinates of a chunk. 
+     * @param pos 
+     * @return the coordinates of the chunk
+     */
+    public int[] getChunkCoords(int pos) {
+        return coordlist[pos];
+    }
+   
+    
+    /**
+     * Returns  a Block without checking the parameters first. Good for debugging and also faster.
+     * Cells without an own block use the shared block of their id and value, so a copy which knows the cell is returned: its clipping and lightlevel are the ones of the cell and changing it changes the cell. Use <i>getStoredBlock</i> in loops, it creates nothing.
+     * @param x position
+     * @param y position
+     * @param z position
+     * @return the single renderobject you wanted
+     */
+    public Block getBlock(int x, int y, int z){
+        Block block = getStoredBlock(x, y, z);
+        if (block.isShared())
+            return Block.getInstance(block.getId(), block.getValue(), new Coordinate(x, y, z, true));
+        return block;  
+    }
+    
+    /**
+     * Returns the block which is stored for a cell: the own block of the cell or the shared block of its id and value. The shared block does not know the cell, so read the clipping and the lightlevel from the map.
+     * Nothing is created for blocks without an own state, so use this when many cells are read.
+     * @param x position
+     * @param y position
+     * @param z position
+     * @return the block. Do not modify it when it is shared.
+     * @see Block#isShared() 
+     */
+    public Block getStoredBlock(int x, int y, int z){
+        int index = index(x, y, z);
+        Block block = data.getBlockIfExists(index);
+        if (block == null)
+            block = data.getBlock(index, Block.isStateful(data.getId(index)) ? new Coordinate(x, y, z, true) : null);
+        return block;  
+    }
+    
+    /**
+     *
+     * @param coord
+     * @return
+     */
+    public Block getBlock(Coordinate coord){
+        return getBlock(coord.getRelX(), coord.getRelY(), coord.getZ());  
+    }
+    
+     /**
+     * Returns a renderobject of the map.
+     * @param x If too high or too low, it takes the highest/deepest value possible
+     * @param y If too high or too low, it takes the highest/deepest value possible
+     * @param z If too high or too low, it takes the highest/deepest value possible
+     * @return A single Block at the wanted coordinates.
+     * @see com.BombingGames.Game.Map#getData(int, int, int) 
+     */
+    public Block getBlockClamp(int x, int y, int z){
+        if (x >= blocksX){
+            x = blocksX-1;
+            Gdx.app.error("Map","X:"+x);
+        } else if( x<0 ){
+            x = 0;
+            Gdx.app.error("Map","X:"+x);
+        }
+        
+        if (y >= blocksY){
+            y = blocksY-1;
+            Gdx.app.debug("Map","Y:"+y);
+        } else if( y < 0 ){
+            y = 0;
+            Gdx.app.error("Map","Y:"+y);
+        }
+        
+        if (z >= blocksZ){
+            z = blocksZ-1;
+            Gdx.app.error("Map","Z:"+z+">="+blocksZ);
+        } else if( z < 0 ){
+            z = 0;
+            Gdx.app.error("Map","Z:"+z+">="+blocksZ);
+        }
+        
+        return getBlock(x, y, z);    
+    }
+    
+    /**
+     * 
+     * @param coords
+     * @return
+     */
+    public Block getDataSafe(Coordinate coords) {
+        return getBlockClamp(coords.getRelX(), coords.getRelY(), coords.getZ());
+    }
+    
+   
+    
+
+    /**
+     * Set a block at a specific coordinate.
+     * @param x position
+     * @param y position
+     * @param z position
+     * @param block  
+     */
+    public void setData(int x, int y, int z, Block block){
+        int index = index(x, y, z);
+        data.setBlock(index, block);
+        dirtyRegion.addCell(index);
+    }
+    
+    /**
+     * Set a block at a specific coordinate.
+     * @param coords
+     * @param block
+     */
+    public void setData(Coordinate coords, Block block) {
+        setData(coords.getRelX(), coords.getRelY(), coords.getZ(), block);
+    }
+        
+   /**
+     * Set a block with safety checks.
+     * @param coords
+     * @param block
+     */
+    public void setDataSafe(int[] coords, Block block) {       
+        if (coords[0] >= blocksX){
+            coords[0] = blocksX-1;
+        } else if( coords[0]<0 ){
+            coords[0] = 0;
+        }
+        
+        if (coords[1] >= blocksY){
+            coords[1] = blocksY-1;
+        } else if( coords[1] < 0 ){
+            coords[1] = 0;
+        }
+        
+        if (coords[2] >= blocksZ){
+            coords[2] = blocksZ-1;
+        } else if( coords[2] < 0 ){
+            coords[2] = 0;
+        }
+        
+        setData(coords[0], coords[1], coords[2], block);
+    }
+    
+    /**
+     * Set a block with safety checks.
+     * @param coord 
+     * @param block
+     */
+    public void setDataSafe(Coordinate coord, Block block) {        
+        setDataSafe(new int[]{
+            coord.getRelX(),
+            coord.getRelY(),
+            coord.getZ()},
+            block
+        );
+    }
+    
+    /**
+     * a method who gives random blocks offset
+     * @param numberofblocks the amount of moved blocks
+     */
+    public void earthquake(int numberofblocks){
+        //pick random blocks 
+        for (int i=0;i < numberofblocks; i++){
+            edit.setOffset(
+                (int) (Math.random()*blocksX-1),
+                (int) (Math.random()*blocksY-1),
+                (int) (Math.random()*blocksZ-1),
+                2,
+                (int) (Math.random()*Block.GAME_DIMENSION)
+            );//vertical shake
+        }
+        edit.commit();
+    }
+    
+    /**
+     * Returns the entitylist. Use <i>addEntity</i> and <i>AbstractEntity.destroy</i> to change it.
+     * @return
+     */
+    public ArrayList<AbstractEntity> getEntitys() {
+        return entitylist;
+    }
+    
+    /**
+     * Returns the entitys sorted by their position. Use it to find the entitys in an area.
+     * @return 
+     */
+    public EntityGrid getEntityGrid() {
+        return entityGrid;
+    }
+    
+    /**
+     * Adds an entity to the map.
+     * @param entity 
+     */
+    public void addEntity(AbstractEntity entity){
+        entitylist.add(entity);
+        entityGrid.add(entity);
+        entityTypes.add(entity);
+    }
+    
+    /**
+     * Removes every entity which should be destroyed. The entitylist and the lists of the types are compacted in one pass, so removing many entitys does not move or search the rest of the lists again and again.
+     * Entitys from a pool are given back to it.
+     */
+    public void removeDestroyedEntitys(){
+        int kept = 0;
+        for (int i = 0; i < entitylist.size(); i++) {
+            AbstractEntity entity = entitylist.get(i);
+            if (entity.shouldBeDestroyed()) {
+                entityGrid.remove(entity);
+                removedEntitys.add(entity);
+            } else {
+                if (kept != i) entitylist.set(kept, entity);
+                kept++;
+            }
+        }
+        if (removedEntitys.isEmpty()) return;
+        entitylist.subList(kept, entitylist.size()).clear();
+        
+        //the type lists are compacted in one pass too, before the pool resets the entitys
+        entityTypes.removeDestroyed();
+        for (int i = 0; i < removedEntitys.size(); i++)
+            AbstractEntity.free(removedEntitys.get(i));
+        removedEntitys.clear();
+    }
+
+    /**
+     *Returns the degree of the world spin. This changes where the sun rises and falls.
+     * @return a number between 0 and 360
+     */
+    public int getWorldSpinDirection() {
+        return worldSpinDirection;
+    }
+    
+    
+    /**
+     * Returns the offset of a cell. Do not modify the array, use <i>setCelloffset</i> instead.
+     * @param coord
+     * @return
+     */
+    public int[] getCellOffset(Coordinate coord) {
+        return data.getOffset(index(coord.getRelX(), coord.getRelY(), coord.getZ()));
+    }   
+    
+    /**
+     *Set the offset in one cell. 
+     * @param coord the cell
+     * @param field 0 = X, 1 = y, 2 = z
+     * @param value the value you want to set the field
+     */
+    public void setCelloffset(Coordinate coord, int field, int value){
+        int index = index(coord.getRelX(), coord.getRelY(), coord.getZSafe());
+        boolean hadOffset = data.hasOffset(index);
+        data.setOffset(index, field, value);
+        //cells with an offset are not used by the raytracing, so only the appearing or disappearing of an offset matters
+        if (hadOffset != data.hasOffset(index)) dirtyRegion.addOffsetChange(index);
+    }
+    
+    /**
+     * Returns the clipping flags of a cell. See <i>CellStorage</i> for the meaning of the bits.
+     * @param coord the cell
+     * @return 
+     */
+    public byte getClipping(Coordinate coord){
+        return data.getClipping(index(coord.getRelX(), coord.getRelY(), coord.getZ()));
+    }
+    
+    /**
+     * Is the whole cell clipped?
+     * @param x relative position
+     * @param y relative position
+     * @param z position
+     * @return true when clipped
+     */
+    public boolean isClipped(int x, int y, int z){
+        return data.isClipped(index(x, y, z));
+    }
+    
+    /**
+     * Clip or unclip a cell. This data is only for rendering and is set by the raytracing.
+     * @param x relative position
+     * @param y relative position
+     * @param z position
+     * @param clipped When it is set to true, every side will also get clipped.
+     */
+    public void setClipped(int x, int y, int z, boolean clipped){
+        data.setClipped(index(x, y, z), clipped);
+    }
+    
+    /**
+     * Make a side of a cell (in)clipping. If one side is not clipped, the whole cell is not clipped.
+     * @param x relative position
+     * @param y relative position
+     * @param z position
+     * @param side 0 = left, 1 = top, 2 = right
+     * @param clipping true when it should be clipped.
+     */
+    public void setSideClipping(int x, int y, int z, int side, boolean clipping){
+        data.setSideClipping(index(x, y, z), side, clipping);
+    }
+    
+    /**
+     * Set every clipping flag of a cell. See <i>CellStorage</i> for the meaning of the bits.
+     * @param x relative position
+     * @param y relative position
+     * @param z position
+     * @param flags 0 makes the cell and every side visible
+     */
+    public void setClipping(int x, int y, int z, int flags){
+        data.setClipping(index(x, y, z), flags);
+    }
+    
+    /**
+     * Clips every cell with the relative x-coordinate and hides the ground below them. The raytracing starts with this.
+     * @param x relative position
+     */
+    public void clipColumns(int x){
+        data.clipSlab(index(x, 0, 0));
+    }
+    
+    /**
+     * Returns the z of the highest block in a column which is not transparent. This is kept up to date when blocks are set, so the column is not searched.
+     * @param x relative position
+     * @param y relative position
+     * @return -1 if every block of the column is transparent
+     */
+    public int getTopSolid(int x, int y){
+        return data.getTopSolid(index(x, y, 0));
+    }
+    
+    /**
+     * Returns the z of the highest block in a column which is not air. This is kept up to date when blocks are set, so the column is not searched.
+     * @param x relative position
+     * @param y relative position
+     * @return -1 if the column is empty
+     */
+    public int getTopNonAir(int x, int y){
+        return data.getTopNonAir(index(x, y, 0));
+    }
+    
+    /**
+     * Is the ground below a column visible? This is set by the raytracing.
+     * @param x relative position
+     * @param y relative position
+     * @return 
+     */
+    public boolean isGroundVisible(int x, int y){
+        return data.isGroundVisible(index(x, y, 0));
+    }
+    
+    /**
+     * Set if the ground below a column is visible. This data is only for rendering and is set by the raytracing.
+     * @param x relative position
+     * @param y relative position
+     * @param visible 
+     */
+    public void setGroundVisible(int x, int y, boolean visible){
+        data.setGroundVisible(index(x, y, 0), visible);
+    }
+    
+    /**
+     * How bright is the cell? The lightlevel is a number between 0 and 1. 1 is full bright. 0 is black. Default is .5.
+     * @param coord the cell
+     * @return 
+     */
+    public float getLightlevel(Coordinate coord){
+        return data.getLightlevel(index(coord.getRelX(), coord.getRelY(), coord.getZ()));
+    }
+    
+    /**
+     * Set the brightness of a cell.
+     * @param x relative position
+     * @param y relative position
+     * @param z position
+     * @param lightlevel between 0 and 1
+     */
+    public void setLightlevel(int x, int y, int z, float lightlevel){
+        data.setLightlevel(index(x, y, z), lightlevel);
+    }
+    
+    /**
+     * The light of a cell coming from blocks which emit light. Set by the <i>LightPropagation</i>.
+     * @param x relative position
+     * @param y relative position
+     * @param z position
+     * @return 0 if there is no light or the cell is outside the map
+     */
+    public int getPointLight(int x, int y, int z){
+        if (x < 0 || x >= blocksX || y < 0 || y >= blocksY || z < 0 || z >= blocksZ) return 0;
+        return data.getPointLight(index(x, y, z));
+    }
+    
+    /**
+     * The light of a cell coming from blocks which emit light.
+     * @param coord the cell
+     * @return 0 if there is no light or the cell is outside the map
+     */
+    public int getPointLight(Coordinate coord){
+        return getPointLight(coord.getRelX(), coord.getRelY(), coord.getZ());
+    }
+    
+    /**
+     * The light of the cell which contains a point, coming from blocks which emit light. The cell is found like in <i>Controller.findCoordinate</i> but with integer math, so no coordinate is created and it can be used every frame.
+     * @param relX relative position in game units
+     * @param relY relative position in game units
+     * @param height in game units
+     * @return 0 if there is no light or the cell is outside the map
+     */
+    public int getPointLight(float relX, float relY, float height){
+        int x = (int) relX / Block.GAME_DIAGSIZE;
+        int y = (int) relY / Block.GAME_DIAGSIZE*2;
+        //move to the neighbour which contains the point
+        switch (Coordinate.getNeighbourSide(relX % Block.GAME_DIAGSIZE, relY % Block.GAME_DIAGSIZE)) {
+            case 0: y -= 2; break;
+            case 1: x += (y % 2 == 1 ? 1 : 0); y -= 1; break;
+            case 2: x += 1; break;
+            case 3: x += (y % 2 == 1 ? 1 : 0); y += 1; break;
+            case 4: y += 2; break;
+            case 5: x -= (y % 2 == 0 ? 1 : 0); y += 1; break;
+            case 6: x -= 1; break;
+            case 7: x -= (y % 2 == 0 ? 1 : 0); y -= 1; break;
+        }
+        return getPointLight(x, y, (int) (height / Block.GAME_DIMENSION));
+    }
+    
+    /**
+     * The light of the cell at a position, coming from blocks which emit light. Points are not converted into coordinates, so nothing is created.
+     * @param pos a coordinate or a point
+     * @return 0 if there is no light or the cell is outside the map
+     */
+    public int getPointLight(AbstractPosition pos){
+        if (pos instanceof Point) {
+            Point point = (Point) pos;
+            return getPointLight(point.getRelX(), point.getRelY(), point.getHeight());
+        }
+        return getPointLight(pos.getCoord());
+    }
+    
+    /**
+     * The light falling on a side of a block. A block which is not transparent gets no light in its own cell, so the light of the cell in front of the side is used.
+     * @param coord the cell of the block
+     * @param side 0 = left, 1 = top, 2 = right
+     * @return 
+     */
+    public int getPointLight(Coordinate coord, int side){
+        int x = coord.getRelX();
+        int y = coord.getRelY();
+        int z = coord.getZ();
+        int front;
+        if (side == Block.TOPSIDE)
+            front = getPointLight(x, y, z+1);
+        else if (side == Block.LEFTSIDE)
+            front = getPointLight(x - (y % 2 == 0 ? 1 : 0), y+1, z);
+        else
+            front = getPointLight(x + (y % 2 == 0 ? 0 : 1), y+1, z);
+        return Math.max(front, getPointLight(x, y, z));
+    }
+    
+    /**
+     * Find every instance of a special class e.g. find every AbstractCharacter. The entitys are sorted by their type when they are added, so nothing is searched.
+     * @param <type>
+     * @param type a class or an interface
+     * @return a read-only list with the entitys. It is not a copy, so it changes when entitys are added or removed.
+     */
+    public <type> List<type> getAllEntitysOfType(Class<type> type) {
+        return entityTypes.get(type);
+    }
+    
+        /**
+     *Returns a coordinate pointing to the absolute(?) center of the map. Height is half the map's height.
+     * @return
+     */
+    public static Point getCenter(){
+        return getCenter(Map.getBlocksZ()*Block.GAME_DIMENSION/2);
+    }
+    
+    /**
+     *Returns a corodinate pointing to the absolute(?) center of the map.
+     * @param height You custom height.
+     * @return
+     */
+    public static Point getCenter(float height){
+        return
+            new Point(
+                Chunk.getGameWidth()*1.5f,
+                Chunk.getGameDepth()*1.5f,
+                height,
+                false
+            );
+    }
+    
+    public static int getGameWidth(){
+        return blocksX*AbstractGameObject.GAME_DIAGSIZE;
+    }
+    
+    /**
+     * The depth of the map in game size
+     * @return 
+     */
+    public static int getGameDepth() {
+        return blocksY*AbstractGameObject.GAME_DIAGSIZE;
+    }
+    
+    /**
+     * Game size
+     * @return 
+     */
+    public static int getGameHeight(){
+        return blocksZ*AbstractGameObject.GAME_DIMENSION;
+    }
+}
@@ -0,0 +1,193 @@
+package com.BombingGames.EngineCore.Map;
+
+import com.BombingGames.EngineCore.Gameobjects.Block;
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ *Changes many cells of the map at once. The cells are written directly into the storage and collected, so the dirty region of the map gets every change in one step when the edit is committed.
+ * Cells which already contain the block are skipped. Every position is relative to the map and clipped to it, so no checks are needed by the caller.<br>
+ * Get the edit with <i>Map.edit()</i>, apply the operations and call <i>commit()</i>. Nothing is recalculated before the commit.
+ * @author Benedikt Vogler
+ */
+public class MapEdit {
+    private final Map map;
+    private final CellStorage data;
+    /**The cells which got a new block.*/
+    private final IntArray changedCells = new IntArray();
+    /**The cells where an offset appeared or disappeared.*/
+    private final IntArray changedOffsets = new IntArray();
+    /**The bounding box of the changed columns.*/
+    private int minX, minY, maxX, maxY;
+
+    /**
+     *
+     * @param map the map which gets edited
+     */
+    protected MapEdit(Map map) {
+        this.map = map;
+        this.data = map.getData();
+        resetBounds();
+    }
+
+    /**
+     * Sets the block of a cell.
+     * @param x relative position
+     * @param y relative position
+     * @param z position
+     * @param id
+     * @param value
+     * @return this edit
+     */
+    public MapEdit set(int x, int y, int z, int id, int value){
+        if (x < 0 || x >= Map.getBlocksX() || y < 0 || y >= Map.getBlocksY() || z < 0 || z >= Map.getBlocksZ())
+            return this;
+        int index = map.index(x, y, z);
+        if (data.getId(index) == id && data.getValue(index) == value)
+            return this;
+
+        data.set(index, id, value);
+        if (Block.isStateful(id)) {
+            //blocks with an own state need their position and count as transparent until they exist
+            data.getBlock(index, new Coordinate(x, y, z, true));
+            data.updateColumnHeights(map.index(x, y, 0));
+        }
+        changedCells.add(index);
+        grow(x, y);
+        return this;
+    }
+
+    /**
+     * Fills a box with a block.
+     * @param x1 relative position of a corner
+     * @param y1 relative position of a corner
+     * @param z1 position of a corner
+     * @param x2 relative position of the opposite corner (inclusive)
+     * @param y2 relative position of the opposite corner (inclusive)
+     * @param z2 position of the opposite corner (inclusive)
+     * @param id
+     * @param value
+     * @return this edit
+     */
+    public MapEdit box(int x1, int y1, int z1, int x2, int y2, int z2, int id, int value){
+        for (int x = Math.max(0, Math.min(x1, x2)); x <= Math.min(Map.getBlocksX()-1, Math.max(x1, x2)); x++)
+            for (int y = Math.max(0, Math.min(y1, y2)); y <= Math.min(Map.getBlocksY()-1, Math.max(y1, y2)); y++)
+                for (int z = Math.max(0, Math.min(z1, z2)); z <= Math.min(Map.getBlocksZ()-1, Math.max(z1, z2)); z++)
+                    set(x, y, z, id, value);
+        return this;
+    }
+
+    /**
+     * Fills a sphere with a block. A row in y is half as deep as a block, so the sphere is twice as long in y.
+     * @param x relative position of the center
+     * @param y relative position of the center
+     * @param z position of the center
+     * @param radius in blocks. Cells closer than this to the center are filled.
+     * @param id
+     * @param value
+     * @return this edit
+     */
+    public MapEdit sphere(int x, int y, int z, int radius, int id, int value){
+        for (int dX = -radius; dX <= radius; dX++)
+            for (int dY = -radius*2; dY <= radius*2; dY++)
+                for (int dZ = -radius; dZ <= radius; dZ++) {
+                    if (dX*dX + (dY/2)*(dY/2) + dZ*dZ < radius*radius)
+                        set(x+dX, y+dY, z+dZ, id, value);
+                }
+        return this;
+    }
+
+    /**
+     * Fills the whole map with a block.
+     * @param id
+     * @param value
+     * @return this edit
+     */
+    public MapEdit fill(int id, int value){
+        return box(0, 0, 0, Map.getBlocksX()-1, Map.getBlocksY()-1, Map.getBlocksZ()-1, id, value);
+    }
+
+    /**
+     * Replaces every block with an id inside a box.
+     * @param x1 relative position of a corner
+     * @param y1 relative position of a corner
+     * @param z1 position of a corner
+     * @param x2 relative position of the opposite corner (inclusive)
+     * @param y2 relative position of the opposite corner (inclusive)
+     * @param z2 position of the opposite corner (inclusive)
+     * @param oldId the id of the blocks which get replaced
+     * @param id the new id
+     * @param value the new value
+     * @return this edit
+     */
+    public MapEdit replace(int x1, int y1, int z1, int x2, int y2, int z2, int oldId, int id, int value){
+        for (int x = Math.max(0, Math.min(x1, x2)); x <= Math.min(Map.getBlocksX()-1, Math.max(x1, x2)); x++)
+            for (int y = Math.max(0, Math.min(y1, y2)); y <= Math.min(Map.getBlocksY()-1, Math.max(y1, y2)); y++)
+                for (int z = Math.max(0, Math.min(z1, z2)); z <= Math.min(Map.getBlocksZ()-1, Math.max(z1, z2)); z++) {
+                    if (data.getId(map.index(x, y, z)) == oldId)
+                        set(x, y, z, id, value);
+                }
+        return this;
+    }
+
+    /**
+     * Set a field of the offset of a cell.
+     * @param x relative position
+     * @param y relative position
+     * @param z position
+     * @param field 0 = x, 1 = y, 2 = z
+     * @param value
+     * @return this edit
+     */
+    public MapEdit setOffset(int x, int y, int z, int field, int value){
+        if (x < 0 || x >= Map.getBlocksX() || y < 0 || y >= Map.getBlocksY() || z < 0 || z >= Map.getBlocksZ())
+            return this;
+        int index = map.index(x, y, z);
+        boolean hadOffset = data.hasOffset(index);
+        data.setOffset(index, field, value);
+        //only the appearing or disappearing of an offset matters for the raytracing
+        if (hadOffset != data.hasOffset(index)) {
+            changedOffsets.add(index);
+            grow(x, y);
+        }
+        return this;
+    }
+
+    /**
+     * Gives every change to the dirty region of the map, so they are recalculated in the next update. The edit can be used again afterwards.
+     * When most cells of the columns in the bounding box of the changes changed, the whole columns are marked instead of every cell.
+     */
+    public void commit(){
+        DirtyRegion region = map.getDirtyRegion();
+        int columns = (maxX-minX+1) * (maxY-minY+1);
+        if (changedCells.size > 0 && changedCells.size*2 >= columns*Map.getBlocksZ()) {
+            for (int x = minX; x <= maxX; x++)
+                for (int y = minY; y <= maxY; y++)
+                    region.addColumn(map.index(x, y, 0));
+        } else
+            region.addCells(changedCells);
+        region.addOffsetChanges(changedOffsets);
+        changedCells.clear();
+        changedOffsets.clear();
+        resetBounds();
+    }
+
+    /**
+     * The amount of cells which got a new block since the last commit.
+     * @return
+     */
+    public int getChangedCellCount(){
+        return changedCells.size;
+    }
+
+    private void grow(int x, int y){
+        if (x < minX) minX = x;
+        if (y < minY) minY = y;
+        if (x > maxX) maxX = x;
+        if (y > maxY) maxY = y;
+    }
+
+    private void resetBounds(){
+        minX = minY = Integer.MAX_VALUE;
+        maxX = maxY = Integer.MIN_VALUE;
+    }
+}
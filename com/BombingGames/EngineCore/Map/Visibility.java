@@ -0,0 +1,123 @@
+package com.BombingGames.EngineCore.Map;
+
+import java.util.Arrays;
+
+/**
+ *The result of the raytracing packed into bitsets. Every cell has four bits in the same order as the cells of the <i>CellStorage</i>: one for every side and one when the whole cell is clipped.
+ * Every column of the map also has a bit which is set when the ground below it is visible.<br>
+ * The bits of every x-slab of the storage start at a new long, so the raytracing of different x-columns never writes into the same long and can run at the same time.
+ * @author Benedikt Vogler
+ */
+public class Visibility {
+    /**The amount of bits of every cell.*/
+    public static final int BITSPERCELL = 4;
+    private static final int CELLMASK = (1 << BITSPERCELL) - 1;
+
+    private final int sizeZ;
+    /**The amount of cells with the same x index.*/
+    private final int slabCells;
+    /**The amount of longs used by a slab of cells.*/
+    private final int slabWords;
+    /**The amount of longs used by the ground bits of a slab.*/
+    private final int groundSlabWords;
+    /**The clipping of every cell.*/
+    private final long[] clipping;
+    /**Is the ground below a column visible?*/
+    private final long[] ground;
+
+    /**
+     * Creates the bitsets for a storage. Nothing is clipped.
+     * @param sizeX the size of the storage
+     * @param sizeY the size of the storage
+     * @param sizeZ the size of the storage
+     */
+    public Visibility(int sizeX, int sizeY, int sizeZ) {
+        this.sizeZ = sizeZ;
+        slabCells = sizeY*sizeZ;
+        slabWords = (slabCells*BITSPERCELL + 63) / 64;
+        groundSlabWords = (sizeY + 63) / 64;
+        clipping = new long[sizeX*slabWords];
+        ground = new long[sizeX*groundSlabWords];
+    }
+
+    /**
+     * The position of the first bit of a cell.
+     * @param index the linear index of the storage
+     * @return
+     */
+    private int bit(int index){
+        int slab = index / slabCells;
+        return slab*slabWords*64 + (index - slab*slabCells)*BITSPERCELL;
+    }
+
+    /**
+     * The position of the ground bit of a column.
+     * @param index the linear index of a cell of the column
+     * @return
+     */
+    private int groundBit(int index){
+        int slab = index / slabCells;
+        return slab*groundSlabWords*64 + (index - slab*slabCells) / sizeZ;
+    }
+
+    /**
+     * Returns the clipping flags of a cell.
+     * @param index the linear index of the storage
+     * @return the bit 1 &lt;&lt; side for every clipped side and <i>CellStorage.CLIPPED</i>
+     */
+    public byte get(int index){
+        int bit = bit(index);
+        return (byte) ((clipping[bit >>> 6] >>> (bit & 63)) & CELLMASK);
+    }
+
+    /**
+     * Sets the clipping flags of a cell.
+     * @param index the linear index of the storage
+     * @param flags the bit 1 &lt;&lt; side for every clipped side and <i>CellStorage.CLIPPED</i>
+     */
+    public void set(int index, int flags){
+        int bit = bit(index);
+        int word = bit >>> 6;
+        clipping[word] = clipping[word] & ~((long) CELLMASK << (bit & 63)) | (long) (flags & CELLMASK) << (bit & 63);
+    }
+
+    /**
+     * Is the ground below a column visible?
+     * @param index the linear index of a cell of the column
+     * @return
+     */
+    public boolean isGroundVisible(int index){
+        int bit = groundBit(index);
+        return (ground[bit >>> 6] & 1L << (bit & 63)) != 0;
+    }
+
+    /**
+     * Set if the ground below a column is visible.
+     * @param index the linear index of a cell of the column
+     * @param visible
+     */
+    public void setGroundVisible(int index, boolean visible){
+        int bit = groundBit(index);
+        if (visible)
+            ground[bit >>> 6] |= 1L << (bit & 63);
+        else
+            ground[bit >>> 6] &= ~(1L << (bit & 63));
+    }
+
+    /**
+     * Clips every cell and hides the ground of a slab.
+     * @param slab the x index in the storage
+     */
+    public void clipSlab(int slab){
+        Arrays.fill(clipping, slab*slabWords, (slab+1)*slabWords, -1L);
+        Arrays.fill(ground, slab*groundSlabWords, (slab+1)*groundSlabWords, 0L);
+    }
+
+    /**
+     * Makes everything visible and hides the ground.
+     */
+    public void clear(){
+        Arrays.fill(clipping, 0L);
+        Arrays.fill(ground, 0L);
+    }
+}
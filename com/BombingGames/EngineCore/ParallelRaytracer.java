@@ -0,0 +1,91 @@
+package com.BombingGames.EngineCore;
+
+import com.BombingGames.EngineCore.Map.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ *Does the raytracing on every core. The traced area is split into bands of x-columns which are traced by a fork/join pool.
+ * The rays of a column only read the ids and offsets of the cells and only write the clipping of the cells in their column, so the bands need no locks.
+ * The properties of the blocks are taken from the static tables of <i>Block</i>, so no block view is created and nothing shared is written by the threads.<br>
+ * Enable it with <i>WECamera.setParallelRaytracing(true)</i>. The scaling can be measured with the <i>RaytracingBenchmark</i>.
+ * @author Benedikt Vogler
+ */
+public class ParallelRaytracer {
+    /**The smallest band which is not split any further.*/
+    private static final int MINBANDWIDTH = 2;
+    /**How many bands every thread gets, so that a thread which finished early can steal work.*/
+    private static final int BANDSPERTHREAD = 4;
+    private static ForkJoinPool pool;
+
+    /**
+     * Traces the lines in a rectangle which were not traced yet with a thread for every core.
+     * @param map
+     * @param fromX the first column
+     * @param toX the column after the last column
+     * @param fromLine the first line
+     * @param toLine the line after the last line
+     * @see WECamera#raytracing(Map, int, int, int, int) 
+     */
+    public static void raytracing(Map map, int fromX, int toX, int fromLine, int toLine){
+        if (pool == null) pool = new ForkJoinPool();
+        raytracing(map, pool, fromX, toX, fromLine, toLine);
+    }
+
+    /**
+     * Traces the lines in a rectangle which were not traced yet with the threads of a pool.
+     * @param map
+     * @param pool 
+     * @param fromX the first column
+     * @param toX the column after the last column
+     * @param fromLine the first line
+     * @param toLine the line after the last line
+     */
+    public static void raytracing(Map map, ForkJoinPool pool, int fromX, int toX, int fromLine, int toLine){
+        int bandwidth = Math.max(MINBANDWIDTH, (toX-fromX) / (pool.getParallelism()*BANDSPERTHREAD));
+        pool.invoke(new Band(map, fromX, toX, fromLine, toLine, bandwidth));
+    }
+
+    /**
+     * Clips every cell and traces the whole map. This is the full raytracing which is done when the map is loaded.
+     * @param map
+     * @param pool the threads which trace the map or null to trace it in this thread
+     */
+    public static void raytracingAll(Map map, ForkJoinPool pool){
+        WECamera.raytracing();
+        if (pool == null)
+            WECamera.raytracing(map, 0, Map.getBlocksX(), 0, WECamera.getLineCount());
+        else
+            raytracing(map, pool, 0, Map.getBlocksX(), 0, WECamera.getLineCount());
+    }
+
+    /**
+     * A band of x-columns. It is split in half until it is small enough.
+     */
+    private static class Band extends RecursiveAction {
+        private final Map map;
+        private final int fromX, toX, fromLine, toLine, bandwidth;
+
+        Band(Map map, int fromX, int toX, int fromLine, int toLine, int bandwidth) {
+            this.map = map;
+            this.fromX = fromX;
+            this.toX = toX;
+            this.fromLine = fromLine;
+            this.toLine = toLine;
+            this.bandwidth = bandwidth;
+        }
+
+        @Override
+        protected void compute() {
+            if (toX-fromX <= bandwidth) {
+                WECamera.raytracing(map, fromX, toX, fromLine, toLine);
+            } else {
+                int middle = (fromX+toX) >>> 1;
+                invokeAll(
+                    new Band(map, fromX, middle, fromLine, toLine, bandwidth),
+                    new Band(map, middle, toX, fromLine, toLine, bandwidth)
+                );
+            }
+        }
+    }
+}
@@ -1,28 +1,103 @@
 package com.BombingGames.EngineCore;
 
 import com.BombingGames.EngineCore.Gameobjects.AbstractGameObject;
+import com.BombingGames.EngineCore.Gameobjects.Block;
 import com.BombingGames.EngineCore.Map.AbstractPosition;
+import com.BombingGames.EngineCore.Map.Coordinate;
 
 /**
  *Saves the information for the rendering. This class is only used in the rendering process.
+ * The records are kept in a pool by the camera and get filled again every frame, so they are not created for every frame.
  * @author Benedikt
  */
 public class Renderobject {
-    private final AbstractPosition pos;
-    private final int depth;
-    private final AbstractGameObject content;
+    private AbstractPosition pos;
+    private int depth;
+    private AbstractGameObject content;
+    /**The relative position of a block. -1 if the object is not a block of the map.*/
+    private int x = -1, y = -1, z = -1;
+    /**The coordinate of a block. It is reused every frame.*/
+    private Coordinate coord;
 
+    /**
+     * Create an empty Renderobject for the pool.
+     */
+    protected Renderobject() {
+    }
+    
      /**
          * Create an Renderobject with a regular Block in the map
          * @param object 
          * @param pos The coordinates where the object should be rendered
          */
     protected Renderobject(AbstractGameObject object, AbstractPosition pos) {
+        set(object, pos);
+    }
+    
+    /**
+     * Fills the record with an object at a position.
+     * @param object
+     * @param pos The coordinates where the object should be rendered
+     */
+    protected void set(AbstractGameObject object, AbstractPosition pos){
         this.pos = pos;
         this.depth = object.getDepth(pos);
         content = object;
+        x = -1;
+        y = -1;
+        z = -1;
     }
 
+    /**
+     * Fills the record with a block of the map. The coordinate of the record is reused.
+     * @param block
+     * @param x relative position
+     * @param y relative position
+     * @param z position
+     * @return true if a new coordinate had to be created
+     */
+    protected boolean setBlock(Block block, int x, int y, int z){
+        boolean created = coord == null;
+        if (created) {
+            coord = new Coordinate(x, y, z, true);
+        } else {
+            coord.setRelX(x);
+            coord.setRelY(y);
+            coord.setZ(z);
+        }
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        pos = coord;
+        content = block;
+        depth = block.getDepth(coord);
+        return created;
+    }
+    
+    /**
+     * Renders the object of the record.
+     * @param view the view using this render method
+     * @param camera The camera rendering the scene
+     */
+    protected void render(View view, WECamera camera){
+        content.render(view, camera, pos);
+    }
+    
+    /**
+     * Updates the relative position and the depth of a block after the reference of the map changed. The coordinate is kept, because it calculates its relative position itself.
+     */
+    protected void relocate(){
+        x = coord.getRelX();
+        y = coord.getRelY();
+        depth = content.getDepth(coord);
+    }
+    
+    /**
+     * Drops the reused coordinate. Must be called when the reference of the map changes, e.g. after a chunk switch.
+     */
+    protected void resetCoordinate(){
+        coord = null;
+    }
 
     /**
      * 
@@ -48,5 +123,27 @@ public class Renderobject {
         return content;
     }
 
-    
-}
\ No newline at end of file
+    /**
+     * The relative x position of a block.
+     * @return -1 if the object is not a block of the map
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * The relative y position of a block.
+     * @return -1 if the object is not a block of the map
+     */
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * The z position of a block.
+     * @return -1 if the object is not a block of the map
+     */
+    public int getZ() {
+        return z;
+    }
+}
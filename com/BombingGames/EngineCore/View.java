@@ -7,6 +7,7 @@ import com.BombingGames.EngineCore.Map.Point;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.GL10;
+import com.badlogic.gdx.graphics.GL11;
 import com.badlogic.gdx.graphics.OrthographicCamera;
 import com.badlogic.gdx.graphics.g2d.BitmapFont;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
@@ -22,6 +23,15 @@ public class View {
      * Every resolution smaller than this get's scaled down and every resolution bigger scaled up. 
      */
     public static final int RENDER_RESOLUTION_WIDTH = 1920;
+    
+    /**
+     * The draw mode which multiplies the texture with the doubled vertex color (GL_COMBINE with a RGB scale of 2).
+     * Dark colors are drawn like with GL_MODULATE and bright colors brighten the texture, so one mode is enough for every object and the batch is not flushed when the brightness changes.
+     */
+    public static final int GL_MODULATE2X = GL11.GL_COMBINE;
+    
+    /**Use GL_MODULATE2X instead of switching between GL_ADD and GL_MODULATE.*/
+    private static boolean modulate2x = false;
 
     private static BitmapFont font;
     
@@ -77,9 +87,14 @@ public class View {
         //Gdx.gl10.glClear(GL10.GL_COLOR_BUFFER_BIT); //clearing the screen is ~5-10% slower than without.
         
         //render every camera
-        for (WECamera camera : controller.getCameras()) {
+        controller.getFpsdiag().startMeasure();
+        int renderCalls = batch.totalRenderCalls;
+        for (int i = 0; i < controller.getCameras().size(); i++) {
+            WECamera camera = controller.getCameras().get(i);
             camera.render(this, camera);
         }
+        FPSdiag.countFlushes(batch.totalRenderCalls - renderCalls);
+        controller.getFpsdiag().stopMeasure();
         
         
         //render HUD
@@ -189,8 +204,8 @@ public class View {
     }
 
     /**
-     *
-     * @param drawmode
+     * Sets the texture environment mode. The batch gets flushed when the mode changes.
+     * @param drawmode GL_ADD, GL_MODULATE or GL_MODULATE2X
      */
     public void setDrawmode(int drawmode) {
         if (drawmode != this.drawmode){
@@ -198,10 +213,31 @@ public class View {
             batch.end();
             //GameObject.getSpritesheet().getFullImage().endUse();
             Gdx.gl10.glTexEnvf(GL10.GL_TEXTURE_ENV, GL10.GL_TEXTURE_ENV_MODE, drawmode);
+            if (drawmode == GL_MODULATE2X) {
+                Gdx.gl10.glTexEnvf(GL10.GL_TEXTURE_ENV, GL11.GL_COMBINE_RGB, GL10.GL_MODULATE);
+                Gdx.gl10.glTexEnvf(GL10.GL_TEXTURE_ENV, GL11.GL_RGB_SCALE, 2);
+            }
             //GameObject.getSpritesheet().getFullImage().startUse();
             batch.begin();
         }
     }
+    
+    /**
+     * Is GL_MODULATE2X used to render the game world? It needs OpenGL ES 1.1 or OpenGL 1.3.
+     * @return true if the objects are rendered without switching the draw mode
+     */
+    public static boolean isModulate2x() {
+        return modulate2x && Gdx.gl11 != null;
+    }
+
+    /**
+     * Use GL_MODULATE2X for the game world or switch between GL_ADD and GL_MODULATE for every object. Off by default.
+     * GL_MODULATE2X multiplies where GL_ADD adds, so bright light looks different: it brightens the texture by its own colors instead of adding a grey. Dark objects look the same.
+     * @param modulate2x 
+     */
+    public static void setModulate2x(boolean modulate2x) {
+        View.modulate2x = modulate2x;
+    }
 
     /**
      *Draw a string using the last active color.
@@ -211,6 +247,7 @@ public class View {
      */
     public void drawString(String msg, int xPos, int yPos) {
         Gdx.gl10.glTexEnvf(GL10.GL_TEXTURE_ENV, GL10.GL_TEXTURE_ENV_MODE, GL10.GL_MODULATE);
+        drawmode = GL10.GL_MODULATE;
         batch.begin();
         font.draw(batch, msg, xPos, yPos);
         batch.end();
@@ -225,6 +262,7 @@ public class View {
      */
     public void drawString(String msg, int xPos, int yPos, Color color) {
         Gdx.gl10.glTexEnvf(GL10.GL_TEXTURE_ENV, GL10.GL_TEXTURE_ENV_MODE, GL10.GL_MODULATE);
+        drawmode = GL10.GL_MODULATE;
         font.setColor(color);
         batch.begin();
         font.draw(batch, msg, xPos, yPos);
@@ -240,6 +278,7 @@ public class View {
      */
     public void drawText(String text, int xPos, int yPos, Color color){
         Gdx.gl10.glTexEnvf(GL10.GL_TEXTURE_ENV, GL10.GL_TEXTURE_ENV_MODE, GL10.GL_MODULATE);
+        drawmode = GL10.GL_MODULATE;
         font.setColor(Color.BLACK);
         font.setScale(0.51f);
         batch.begin();
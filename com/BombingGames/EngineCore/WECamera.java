@@ -3,25 +3,28 @@ package com.BombingGames.EngineCore;
 import com.BombingGames.EngineCore.Gameobjects.AbstractEntity;
 import com.BombingGames.EngineCore.Gameobjects.AbstractGameObject;
 import com.BombingGames.EngineCore.Gameobjects.Block;
-import com.BombingGames.EngineCore.Map.Cell;
+import com.BombingGames.EngineCore.Map.CellStorage;
+import com.BombingGames.EngineCore.Map.Chunk;
 import com.BombingGames.EngineCore.Map.Coordinate;
+import com.BombingGames.EngineCore.Map.DirtyRegion;
 import com.BombingGames.EngineCore.Map.Map;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.Camera;
 import com.badlogic.gdx.graphics.GL10;
 import com.badlogic.gdx.math.Matrix4;
 import com.badlogic.gdx.math.Vector3;
-import java.util.ArrayList;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import java.util.Arrays;
 
 /**
  *Creates a virtual camera wich displays the game world on the viewport.  
  * @author Benedikt Vogler
  */
 public class WECamera extends Camera {
-    /**
-     *
-     */
-    public static final boolean[][] DEEPEST_LAYER_VISIVBILITY = new boolean[Map.getBlocksX()][Map.getBlocksY()];
+    /**The amount of bits of the depth which are sorted in one pass of the radix sort.*/
+    private static final int RADIXBITS = 8;
+    private static final int RADIX = 1 << RADIXBITS;
     
     /** the position on the screen*/
     private final int viewportPosX, viewportPosY;
@@ -33,7 +36,45 @@ public class WECamera extends Camera {
     
     private Coordinate focusCoordinates;
     private AbstractEntity focusentity;
-    private final ArrayList<Renderobject> depthsort = new ArrayList<Renderobject>();
+    /**The objects which get rendered. Only the first <i>depthlistSize</i> entries are used. The arrays are reused every frame.*/
+    private Renderobject[] depthlist = new Renderobject[1024];
+    private int depthlistSize;
+    private Renderobject[] sortBuffer = new Renderobject[1024];
+    private int[] sortKeys = new int[1024];
+    private int[] sortKeyBuffer = new int[1024];
+    private final int[] radixCount = new int[RADIX+1];
+    /**The render records. They are reused every frame. Only the first <i>poolUsed</i> records are in use in the current frame.*/
+    private Renderobject[] pool = new Renderobject[1024];
+    private int poolUsed;
+    /**The coordinate used to render the deepest layer.*/
+    private Coordinate groundCoord;
+    /**The static blocks of every chunk. Shared by every camera.*/
+    private static final ChunkRenderCache renderCache = new ChunkRenderCache();
+    /**The cells of the dynamic blocks. Reused every frame.*/
+    private final IntArray dynamicCells = new IntArray();
+    /**Reused for the entitys in the area of the camera.*/
+    private final Array<AbstractEntity> nearEntitys = new Array<AbstractEntity>(false, 64);
+    private final int[] relativePosition = new int[3];
+    /**Use the parallel raytracing for the full raytracing.*/
+    private static boolean parallelRaytracing;
+    /**The lines of rays which have to be traced again, indexed by x*lineCount + line.*/
+    private static boolean[] markedLines;
+    /**The lines which were traced since the map changed, indexed by x*lineCount + line. Shared by every camera.*/
+    private static boolean[] tracedLines;
+    /**Increased every time lines get invalid, so the cameras know that they have to check their window again.*/
+    private static int tracedGeneration;
+    /**The chunk coordinates of the top left chunk when the lines were traced.*/
+    private static int tracedReferenceX, tracedReferenceY;
+    /**How many blocks around the window are also traced.*/
+    private static final int VISIBILITYMARGIN = 2;
+    /**The window and the generation of the last traced window of this camera.*/
+    private int visibleLeft, visibleRight, visibleTop, visibleBottom;
+    private int visibleGeneration = -1;
+    /**The marked lines in the order they were marked.*/
+    private static final IntArray markedList = new IntArray();
+    private static final int[] tracePosition = new int[3];
+    /**The chunk coordinates of the top left chunk when the coordinates of the pool were created.*/
+    private int referenceX, referenceY;
     
     private final Block groundBlock;
     
@@ -62,9 +103,7 @@ public class WECamera extends Camera {
         outputPosX = Map.getCenter().get2DPosX() - get2DWidth() / 2;
         outputPosY = Map.getCenter().get2DPosY() - get2DHeight() / 2;
         
-        groundBlock = Block.getInstance(2);//set the ground level groundBlock
-        groundBlock.setSideClipping(0, true);
-        groundBlock.setSideClipping(2, true);
+        groundBlock = Block.getInstance(2);//set the ground level groundBlock, only the top side is rendered
     }
     
    /**
@@ -110,8 +149,9 @@ public class WECamera extends Camera {
             outputPosX = focusCoordinates.get2DPosX() - get2DWidth() / 2 - AbstractGameObject.SCREEN_DEPTH2;
             outputPosY = focusCoordinates.get2DPosY() - get2DHeight() / 2;
         } else if (focusentity != null ){
-            outputPosX = focusentity.getPos().get2DPosX() - get2DWidth()/2 + AbstractGameObject.SCREEN_DEPTH2;            
-            outputPosY = focusentity.getPos().get2DPosY() - get2DHeight()/2 ;
+            //follow the entity where it is drawn, so it stays in the center between the ticks
+            outputPosX = focusentity.getInterpolated2DPosX() - get2DWidth()/2 + AbstractGameObject.SCREEN_DEPTH2;            
+            outputPosY = focusentity.getInterpolated2DPosY() - get2DHeight()/2 ;
         }
         
         position.set(outputPosX+ get2DWidth()/2 , outputPosY+ get2DHeight()/2 , 0); 
@@ -161,14 +201,23 @@ public class WECamera extends Camera {
             );
             
             view.getBatch().begin();
-            view.setDrawmode(GL10.GL_MODULATE);
+            view.setDrawmode(View.isModulate2x() ? View.GL_MODULATE2X : GL10.GL_MODULATE);
+            
+            checkReference();
+            updateVisibility(Controller.getMap());
             
             //render last layer tiles if visible
-            for (int x = 0; x < Map.getBlocksX(); x++) {
-                for (int y = 0; y < Map.getBlocksY(); y++) {
-                    if (DEEPEST_LAYER_VISIVBILITY[x][y]){
-                        int xPos = new Coordinate(x, y, -1, true).get2DPosX();//right side is  half a block more to the right
-                        int yPos = new Coordinate(x, y, -1, true).get2DPosY();//the top is drawn a quarter blocks higher
+            if (groundCoord == null) {
+                groundCoord = new Coordinate(0, 0, -1, true);
+                FPSdiag.countAllocations(1);
+            }
+            for (int x = leftborder; x <= rightborder; x++) {
+                for (int y = topborder; y <= bottomborder; y++) {
+                    if (Controller.getMap().isGroundVisible(x, y)){
+                        groundCoord.setRelX(x);
+                        groundCoord.setRelY(y);
+                        int xPos = groundCoord.get2DPosX();//right side is  half a block more to the right
+                        int yPos = groundCoord.get2DPosY();//the top is drawn a quarter blocks higher
                         groundBlock.renderSideAt(view, xPos, yPos, 1);
                     }
                 }
@@ -178,8 +227,8 @@ public class WECamera extends Camera {
             createDepthList();
             
             //render vom bottom to top
-            for (Renderobject renderobject : depthsort) {
-                renderobject.getObject().render(view, camera, renderobject.getCoords()); 
+            for (int i = 0; i < depthlistSize; i++) {
+                depthlist[i].render(view, camera); 
             }
             
             view.getBatch().end();
@@ -190,122 +239,485 @@ public class WECamera extends Camera {
      * Fills the map into a list and sorts it in the order of the rendering, called the "depthlist".
      */
     protected void createDepthList() {
-        depthsort.clear();
+        depthlistSize = 0;
+        poolUsed = 0;
+        checkReference();
+        Map map = Controller.getMap();
+        int bottom = outputPosY + get2DHeight();
         
-        for (int x = leftborder; x < rightborder; x++)
-            for (int y = topborder; y < bottomborder; y++){
-                
-                //add blocks
-                for (int z=0; z < Map.getBlocksZ(); z++){
-                    
-                    Coordinate coord = new Coordinate(x, y, z, true); 
-                    Block blockAtCoord = coord.getBlock();
-                    if (! blockAtCoord.isHidden()
-                        && !blockAtCoord.isClipped()
-                        && 
-                            coord.get2DPosY()
-                        <
-                            outputPosY + get2DHeight()
-                    ) {
-                        depthsort.add(new Renderobject(blockAtCoord, coord));
+        //add the cached static blocks
+        renderCache.update(map);
+        for (int pos = 0; pos < 9; pos++) {
+            //skip chunks which are not visible
+            if (Chunk.getBlocksX()*(pos%3) >= rightborder || Chunk.getBlocksX()*(pos%3+1) <= leftborder
+                || Chunk.getBlocksY()*(pos/3) >= bottomborder || Chunk.getBlocksY()*(pos/3+1) <= topborder)
+                continue;
+            for (int i = 0; i < renderCache.getSize(pos); i++) {
+                CachedRenderobject renderobject = renderCache.get(pos, i);
+                if (renderobject.getX() >= leftborder && renderobject.getX() < rightborder
+                    && renderobject.getY() >= topborder && renderobject.getY() < bottomborder
+                    && renderobject.getScreenY() < bottom)
+                    addToDepthList(renderobject);
+            }
+        }
+        
+        //add the dynamic blocks
+        map.getDynamicCells(dynamicCells);
+        for (int i = 0; i < dynamicCells.size; i++) {
+            map.getRelativePosition(dynamicCells.get(i), relativePosition);
+            int x = relativePosition[0];
+            int y = relativePosition[1];
+            int z = relativePosition[2];
+            if (x >= leftborder && x < rightborder && y >= topborder && y < bottomborder) {
+                Block blockAtCoord = map.getStoredBlock(x, y, z);
+                if (! blockAtCoord.isHidden()
+                    && !map.isClipped(x, y, z)
+                ) {
+                    Renderobject renderobject = getPooledRenderobject();
+                    if (renderobject.setBlock(blockAtCoord, x, y, z))
+                        FPSdiag.countAllocations(1);
+                    if (renderobject.getCoords().get2DPosY() < bottom) {
+                        addToDepthList(renderobject);
+                        poolUsed++;
                     }
                 }
             }
+        }
         
-        //add entitys
-        for (int i=0; i< Controller.getMap().getEntitys().size(); i++) {
-            AbstractEntity entity = Controller.getMap().getEntitys().get(i);
+        //add the entitys in the area of the camera
+        nearEntitys.clear();
+        map.getEntityGrid().queryCamera(this, nearEntitys);
+        for (int i=0; i< nearEntitys.size; i++) {
+            AbstractEntity entity = nearEntitys.get(i);
             if (!entity.isHidden() && !entity.isClipped()
                 && 
                 entity.getPos().get2DPosY() < outputPosY + get2DHeight()
-                )
-                    depthsort.add(
-                        new Renderobject(entity, entity.getPos())
-                    );
+                ) {
+                    Renderobject renderobject = getPooledRenderobject();
+                    renderobject.set(entity, entity.getPos());
+                    addToDepthList(renderobject);
+                    poolUsed++;
+            }
         }
         //sort the list
-        if (depthsort.size()>0)
-            sortDepthList(0, depthsort.size()-1);
+        if (depthlistSize>0)
+            sortDepthList();
         else Gdx.app.error("WECamera", "depthsort is empty");
     }
     
     /**
-     * Using Quicksort to sort.
-     * From small to big values.
-     * @param low the lower border
-     * @param high the higher border
+     * Returns the next unused record of the pool. The caller marks it as used by incrementing <i>poolUsed</i>.
+     * @return 
      */
-    private void sortDepthList(int low, int high) {
-        int left = low;
-        int right = high;
-        int middle = depthsort.get((low+high)/2).getDepth();
-
-        while (left <= right){    
-            while(depthsort.get(left).getDepth() < middle) left++; 
-            while(depthsort.get(right).getDepth() > middle) right--;
-
-            if (left <= right) {
-                Renderobject tmp = depthsort.set(left, depthsort.get(right));
-                depthsort.set(right, tmp);
-                left++; 
-                right--;
+    private Renderobject getPooledRenderobject(){
+        if (poolUsed == pool.length) {
+            pool = java.util.Arrays.copyOf(pool, poolUsed*2);
+            FPSdiag.countAllocations(1);
+        }
+        if (pool[poolUsed] == null) {
+            pool[poolUsed] = new Renderobject();
+            FPSdiag.countAllocations(1);
+        }
+        return pool[poolUsed];
+    }
+    
+    /**
+     * The coordinates of the pool are relative to the top left chunk. When the map changes it's top left chunk they must be created again.
+     */
+    private void checkReference(){
+        int[] reference = Controller.getMap().getChunkCoords(0);
+        if (reference[0] != referenceX || reference[1] != referenceY) {
+            referenceX = reference[0];
+            referenceY = reference[1];
+            for (Renderobject renderobject : pool) {
+                if (renderobject != null) renderobject.resetCoordinate();
             }
+            groundCoord = null;
         }
-
-        if(low < right) sortDepthList(low, right);
-        if(left < high) sortDepthList(left, high);
+    }
+    
+    /**
+     * Adds an object at the end of the depthlist.
+     * @param renderobject 
+     */
+    private void addToDepthList(Renderobject renderobject){
+        if (depthlistSize == depthlist.length) {
+            depthlist = java.util.Arrays.copyOf(depthlist, depthlistSize*2);
+            FPSdiag.countAllocations(1);
+        }
+        depthlist[depthlistSize++] = renderobject;
+    }
+    
+    /**
+     * Sorts the depthlist from small to big depth values with a radix sort. 
+     * The sort is stable and needs linear time, so the nearly sorted input of the loops does not matter. The depth values are bounded, so only a few passes are needed.
+     */
+    private void sortDepthList() {
+        //the buffers must be as big as the list
+        if (sortBuffer.length < depthlist.length) {
+            sortBuffer = new Renderobject[depthlist.length];
+            sortKeys = new int[depthlist.length];
+            sortKeyBuffer = new int[depthlist.length];
+        }
+        
+        //the keys must not be negative
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int i = 0; i < depthlistSize; i++) {
+            int depth = depthlist[i].getDepth();
+            sortKeys[i] = depth;
+            if (depth < min) min = depth;
+            if (depth > max) max = depth;
+        }
+        for (int i = 0; i < depthlistSize; i++) {
+            sortKeys[i] -= min;
+        }
+        int range = max - min;
+        
+        Renderobject[] source = depthlist;
+        Renderobject[] destination = sortBuffer;
+        int[] sourceKeys = sortKeys;
+        int[] destinationKeys = sortKeyBuffer;
+        for (int shift = 0; shift < 32 && (range >>> shift) != 0; shift += RADIXBITS) {
+            java.util.Arrays.fill(radixCount, 0);
+            for (int i = 0; i < depthlistSize; i++)
+                radixCount[((sourceKeys[i] >>> shift) & (RADIX-1)) + 1]++;
+            for (int digit = 0; digit < RADIX; digit++)
+                radixCount[digit+1] += radixCount[digit];
+            for (int i = 0; i < depthlistSize; i++) {
+                int position = radixCount[(sourceKeys[i] >>> shift) & (RADIX-1)]++;
+                destination[position] = source[i];
+                destinationKeys[position] = sourceKeys[i];
+            }
+            
+            //the destination is the source of the next pass
+            Renderobject[] tmp = source;
+            source = destination;
+            destination = tmp;
+            int[] tmpKeys = sourceKeys;
+            sourceKeys = destinationKeys;
+            destinationKeys = tmpKeys;
+        }
+        
+        depthlist = source;
+        sortBuffer = destination;
+        sortKeys = sourceKeys;
+        sortKeyBuffer = destinationKeys;
     }
         
     /**
      * Filters every Block (and side) wich is not visible. Boosts rendering speed.
+     * Every cell gets clipped and the rays are traced again when a camera shows them.
      */
     protected static void raytracing(){ 
-        //set visibility of every groundBlock to false, except blocks with offset
-        Cell[][][] mapdata = Controller.getMap().getData();
+        Map map = Controller.getMap();
         for (int x=0; x < Map.getBlocksX(); x++)
-            for (int y=0; y < Map.getBlocksY(); y++)
-                for (int z=0; z < Map.getBlocksZ(); z++) {
-                    Block block = mapdata[x][y][z].getBlock();
-                    
-                    boolean notAnalyzable = !block.hasSides()
-                        || new Coordinate(x,y,z, true).hasOffset();//Blocks with offset are not in the grid, so can not be analysed => always visible
-                    block.setClipped(!notAnalyzable);
+            map.clipColumns(x);
+        invalidateLines();
+    }
+    
+    /**
+     * Traces every line in a rectangle which was not traced since the map changed. The rays of a column only write into the cells of this column, so different bands of columns can be traced at the same time.
+     * The rays read only the ids and offsets of the cells and never create a block, so nothing else is written.
+     * @param map
+     * @param fromX the first column
+     * @param toX the column after the last column
+     * @param fromLine the first line
+     * @param toLine the line after the last line
+     */
+    protected static void raytracing(Map map, int fromX, int toX, int fromLine, int toLine){
+        int lineCount = getLineCount();
+        for (int x=fromX; x < toX; x++)
+            for (int line=fromLine; line < toLine; line++)
+                if (!tracedLines[x*lineCount + line]) {
+                    tracedLines[x*lineCount + line] = true;
+                    traceLine(map, x, line, true);
                 }
-                
-        //send the rays through top of the map
-        for (int x=0; x < Map.getBlocksX(); x++)
-            for (int y=0; y < Map.getBlocksY() + Map.getBlocksZ()*2; y++){
-                traceRay(x,y, 0);
-                traceRay(x,y, 1);
-                traceRay(x,y, 2);
-            }     
+    }
+    
+    /**
+     * Marks every line as not traced.
+     */
+    private static void invalidateLines(){
+        checkLineArrays();
+        Arrays.fill(tracedLines, false);
+        tracedGeneration++;
+    }
+    
+    /**
+     * Creates the arrays of the lines when they do not fit the map and moves the lines when the chunks were moved, because the lines use relative coordinates.
+     */
+    private static void checkLineArrays(){
+        int size = Map.getBlocksX()*getLineCount();
+        if (tracedLines == null || tracedLines.length != size) {
+            tracedLines = new boolean[size];
+            markedLines = new boolean[size];
+            tracedGeneration++;
+        }
+        Map map = Controller.getMap();
+        if (map.getChunkCoords(0)[0] != tracedReferenceX || map.getChunkCoords(0)[1] != tracedReferenceY) {
+            shiftTracedLines(
+                (map.getChunkCoords(0)[0] - tracedReferenceX) * Chunk.getBlocksX(),
+                (map.getChunkCoords(0)[1] - tracedReferenceY) * Chunk.getBlocksY()
+            );
+            tracedReferenceX = map.getChunkCoords(0)[0];
+            tracedReferenceY = map.getChunkCoords(0)[1];
+            tracedGeneration++;
+        }
+    }
+    
+    /**
+     * Moves the traced lines after a chunk switch, so the lines of the chunks which stayed are still traced. Only the lines which pass through the new chunks are marked as not traced, they are traced when a camera shows them.
+     * The lines next to the new chunks are traced again by the dirty region of the new chunks. The marked lines are always empty here, because they are traced right after they are marked.
+     * @param shiftX how many blocks the top left corner moved in x
+     * @param shiftY how many blocks the top left corner moved in y
+     */
+    private static void shiftTracedLines(int shiftX, int shiftY){
+        int lineCount = getLineCount();
+        //the rows which were in the map before
+        int keptTop = Math.max(0, -shiftY);
+        int keptBottom = Math.min(Map.getBlocksY(), Map.getBlocksY() - shiftY);
+        int fromX = shiftX > 0 ? 0 : Map.getBlocksX()-1;
+        int step = shiftX > 0 ? 1 : -1;
+        for (int x = fromX; x >= 0 && x < Map.getBlocksX(); x += step) {
+            int oldX = x + shiftX;
+            for (int i = 0; i < lineCount; i++) {
+                //go against the shift, so no line is overwritten before it is moved
+                int line = shiftY > 0 ? i : lineCount-1-i;
+                int oldLine = line + shiftY;
+                boolean traced = false;
+                if (oldX >= 0 && oldX < Map.getBlocksX() && oldLine >= 0 && oldLine < lineCount
+                    //every cell of the line must be in the rows which stayed
+                    && Math.max(0, line - 2*(Map.getBlocksZ()-1)) >= keptTop
+                    && Math.min(Map.getBlocksY()-1, line) < keptBottom)
+                    traced = tracedLines[oldX*lineCount + oldLine];
+                tracedLines[x*lineCount + line] = traced;
+            }
+        }
+    }
+    
+    /**
+     * Traces the rays of the cells this camera shows, if they were not traced yet. This only does something when the camera moved or the map changed.
+     * @param map 
+     */
+    private void updateVisibility(Map map){
+        checkLineArrays();
+        int left = getLeftBorder();
+        int right = getRightBorder();
+        int top = getTopBorder();
+        int bottom = getBottomBorder();
+        if (left == visibleLeft && right == visibleRight && top == visibleTop && bottom == visibleBottom
+            && visibleGeneration == tracedGeneration)
+            return;
+        visibleLeft = left;
+        visibleRight = right;
+        visibleTop = top;
+        visibleBottom = bottom;
+        visibleGeneration = tracedGeneration;
+        
+        //every line which passes through the window
+        int fromX = Math.max(0, left - VISIBILITYMARGIN);
+        int toX = Math.min(Map.getBlocksX(), right + 1 + VISIBILITYMARGIN);
+        int fromLine = Math.max(0, top - VISIBILITYMARGIN);
+        int toLine = Math.min(getLineCount(), getLine(bottom, 0) + 1 + VISIBILITYMARGIN);
+        if (parallelRaytracing)
+            ParallelRaytracer.raytracing(map, fromX, toX, fromLine, toLine);
+        else
+            raytracing(map, fromX, toX, fromLine, toLine);
+    }
+    
+    /**
+     * Is the raytracing of the camera windows split over every core?
+     * @return 
+     */
+    public static boolean isParallelRaytracing() {
+        return parallelRaytracing;
+    }
+
+    /**
+     * Split the raytracing of the camera windows over every core. This needs fork/join (Java 7 or Android 5).
+     * @param parallelRaytracing 
+     * @see ParallelRaytracer
+     */
+    public static void setParallelRaytracing(boolean parallelRaytracing) {
+        WECamera.parallelRaytracing = parallelRaytracing;
+    }
+    
+    /**
+     * Traces only the rays which pass through the changed parts of the map. The rays through a changed cell and the rays which use the cell as a neighbour are traced again.
+     * @param region the changes since the last raytracing
+     */
+    protected static void raytracing(DirtyRegion region){
+        Map map = Controller.getMap();
+        checkLineArrays();
+        IntArray cells = region.getCells();
+        for (int i = 0; i < cells.size; i++) {
+            map.getRelativePosition(cells.get(i), tracePosition);
+            markCell(tracePosition[0], tracePosition[1], tracePosition[2], true);
+        }
+        IntArray columns = region.getColumns();
+        for (int i = 0; i < columns.size; i++) {
+            map.getRelativePosition(columns.get(i), tracePosition);
+            for (int z=0; z < Map.getBlocksZ(); z++)
+                markCell(tracePosition[0], tracePosition[1], z, true);
+        }
+        traceMarkedLines(map, false);
+    }
+    
+    /**
+     * Every ray goes from the top of the map down to the bottom on a line where y increases by two when z increases by one. So every cell is on exactly one line.
+     * @param y relative position
+     * @param z position
+     * @return the number of the line. It is the y-coordinate where the line would leave the top of the map.
+     */
+    private static int getLine(int y, int z){
+        return y + 2*(Map.getBlocksZ()-1-z);
+    }
+    
+    /**
+     * The amount of lines in every x-column.
+     * @return 
+     */
+    protected static int getLineCount(){
+        return Map.getBlocksY() + 2*(Map.getBlocksZ()-1);
+    }
+    
+    /**
+     * Marks the line of a cell, so that it is traced by <i>traceMarkedLines</i>.
+     * @param x relative position
+     * @param y relative position
+     * @param z position
+     * @param neighbours true when the lines which check this cell as a neighbour should also be traced
+     */
+    private static void markCell(int x, int y, int z, boolean neighbours){
+        int line = getLine(y, z);
+        markLine(x, line);
+        if (neighbours) {
+            //the cell behind and the cell below
+            markLine(x, line-2);
+            markLine(x, line+2);
+            //the cells on the left and on the right in the row in front
+            int left = x - (y%2 == 0 ? 1:0);
+            int right = x + (y%2 == 0 ? 0:1);
+            markLine(left, line-1);
+            markLine(left, line+1);
+            markLine(right, line-1);
+            markLine(right, line+1);
+        }
+    }
+    
+    private static void markLine(int x, int line){
+        if (x < 0 || x >= Map.getBlocksX() || line < 0 || line >= getLineCount()) return;
+        int key = x*getLineCount() + line;
+        if (!markedLines[key]) {
+            markedLines[key] = true;
+            markedList.add(key);
+        }
+    }
+    
+    /**
+     * Resets and traces every marked line.
+     * @param map 
+     * @param all true to trace every marked line, false to trace only lines which were already traced. The other lines are traced when a camera shows them.
+     */
+    private static void traceMarkedLines(Map map, boolean all){
+        int lineCount = getLineCount();
+        for (int i = 0; i < markedList.size; i++) {
+            int key = markedList.get(i);
+            markedLines[key] = false;
+            if (all || tracedLines[key]) {
+                tracedLines[key] = true;
+                traceLine(map, key / lineCount, key % lineCount, true);
+            }
+        }
+        markedList.clear();
+    }
+    
+    /**
+     * Traces the three rays of a line.
+     * @param map
+     * @param x relative position
+     * @param line the number of the line
+     * @param reset true if the clipping of the cells on the line should be reset first
+     */
+    private static void traceLine(Map map, int x, int line, boolean reset){
+        //find the cell where the line enters the map
+        int y = line;
+        int z = Map.getBlocksZ()-1;
+        if (y >= Map.getBlocksY()) {
+            int steps = (y-Map.getBlocksY())/2 + 1;
+            y -= steps*2;
+            z -= steps;
+        }
+        
+        if (reset) {
+            for (int cellY = y, cellZ = z; cellY >= 0 && cellZ >= 0; cellY -= 2, cellZ--) {
+                map.setClipping(x, cellY, cellZ, isAnalyzable(map, x, cellY, cellZ) ? CellStorage.ALLCLIPPED : 0);
+                if (cellZ == 0) map.setGroundVisible(x, cellY, false);
+            }
+        }
+        
+        traceRay(map, x, y, z, Block.LEFTSIDE);
+        traceRay(map, x, y, z, Block.TOPSIDE);
+        traceRay(map, x, y, z, Block.RIGHTSIDE);
+    }
+    
+    /**
+     * Can the raytracing find out if a cell is visible? Cells which can not be analyzed are always visible.
+     */
+    private static boolean isAnalyzable(Map map, int x, int y, int z){
+        int index = map.index(x, y, z);
+        return Block.hasSides(map.getData().getId(index))
+            && !map.getData().hasOffset(index);//Blocks with offset are not in the grid, so can not be analysed => always visible
+    }
+    
+    /**
+     * Has the block of a cell sides? Only the id is read, so no block is created.
+     */
+    private static boolean hasSides(Map map, int x, int y, int z){
+        return Block.hasSides(map.getData().getId(map.index(x, y, z)));
+    }
+    
+    /**
+     * Is the block of a cell liquid? Only the id is read, so no block is created.
+     */
+    private static boolean isLiquid(Map map, int x, int y, int z){
+        return Block.isLiquid(map.getData().getId(map.index(x, y, z)));
+    }
+    
+    /**
+     * Has the cell an offset?
+     */
+    private static boolean hasOffset(Map map, int x, int y, int z){
+        return map.getData().hasOffset(map.index(x, y, z));
+    }
+    
+    /**
+     * Does the block of a cell hide the block behind it? This is the case when it has sides, is not transparent and has no offset. Only the id is read, so no block is created.
+     * @see Coordinate#hidingPastBlock() 
+     */
+    private static boolean hidingPastBlock(Map map, int x, int y, int z){
+        int index = map.index(x, y, z);
+        int id = map.getData().getId(index);
+        return Block.hasSides(id) && !Block.isTransparent(id) && !map.getData().hasOffset(index);
     }
     
     /**
     * Traces a single ray.
     * This costs less performance than a whole raytracing.
+     * @param map
      * @param x The starting x-coordinate.
      * @param y The starting y-coordinate.
+     * @param z The starting z-coordinate. The ray starts at the top of the map or at the back side.
      * @param side The side the ray should check
      */
-    private static void traceRay(int x, int y, int side){
-        int z = Map.getBlocksZ()-1;//start always from top
-        
+    private static void traceRay(Map map, int x, int y, int z, int side){
         boolean left = true;
         boolean right = true;
         boolean leftliquid = false;
         boolean rightliquid = false;
         boolean liquidfilter = false;
 
-        //bring ray to start position
-        if (y > Map.getBlocksY()-1) {
-            z -= (y-Map.getBlocksY())/2;
-            if (y % 2 == 0)
-                y = Map.getBlocksY()-1;
-            else
-                y = Map.getBlocksY()-2;
-        }
-
         y += 2;
         z++;  
         do {
@@ -314,23 +726,23 @@ public class WECamera extends Camera {
 
             if (side == 0){
                 //direct neighbour groundBlock on left hiding the complete left side
-                if (Controller.getMap().getBlock(x, y, z).hasSides()//block on top
+                if (hasSides(map, x, y, z)//block on top
                     && x > 0 && y < Map.getBlocksY()-1
-                    && new Coordinate(x - (y%2 == 0 ? 1:0), y+1, z, true).hidingPastBlock())
+                    && hidingPastBlock(map, x - (y%2 == 0 ? 1:0), y+1, z))
                     break; //stop ray
 
                 //liquid
-                if (Controller.getMap().getBlock(x, y, z).isLiquid()){
+                if (isLiquid(map, x, y, z)){
                     if (x > 0 && y+1 < Map.getBlocksY()
-                    && Controller.getMap().getBlock(x - (y%2 == 0 ? 1:0), y+1, z).isLiquid())
+                    && isLiquid(map, x - (y%2 == 0 ? 1:0), y+1, z))
                         liquidfilter = true;
 
                     if (x > 0 && y < Map.getBlocksY()-1 && z < Map.getBlocksZ()-1
-                        && Controller.getMap().getBlock(x - (y%2 == 0 ? 1:0), y+1, z+1).isLiquid())
+                        && isLiquid(map, x - (y%2 == 0 ? 1:0), y+1, z+1))
                         leftliquid = true;
 
                     if (y < Map.getBlocksY()-2 &&
-                        Controller.getMap().getBlock(x, y+2, z).isLiquid())
+                        isLiquid(map, x, y+2, z))
                         rightliquid = true;
 
                     if (leftliquid && rightliquid) liquidfilter = true;
@@ -338,30 +750,30 @@ public class WECamera extends Camera {
 
                 //two blocks hiding the left side
                 if (x > 0 && y < Map.getBlocksY()-1 && z < Map.getBlocksZ()-1
-                    && new Coordinate(x - (y%2 == 0 ? 1:0), y+1, z+1, true).hidingPastBlock())
+                    && hidingPastBlock(map, x - (y%2 == 0 ? 1:0), y+1, z+1))
                     left = false;
                 if (y < Map.getBlocksY()-2
-                    && new Coordinate(x, y+2, z, true).hidingPastBlock()
+                    && hidingPastBlock(map, x, y+2, z)
                     )
                     right = false;
 
             } else if (side == 1) {//check top side
-                if (Controller.getMap().getBlock(x, y, z).hasSides()//block on top
+                if (hasSides(map, x, y, z)//block on top
                     && z+1 < Map.getBlocksZ()
-                    && new Coordinate(x, y, z+1, true).hidingPastBlock())
+                    && hidingPastBlock(map, x, y, z+1))
                     break;
 
                 //liquid
-                if (Controller.getMap().getBlock(x, y, z).isLiquid()){
-                    if (z < Map.getBlocksZ()-1 && Controller.getMap().getBlock(x, y, z+1).isLiquid())
+                if (isLiquid(map, x, y, z)){
+                    if (z < Map.getBlocksZ()-1 && isLiquid(map, x, y, z+1))
                         liquidfilter = true;
 
                     if (x>0 && y < Map.getBlocksY()-1 && z < Map.getBlocksZ()-1
-                        && Controller.getMap().getBlock(x - (y%2 == 0 ? 1:0), y+1, z+1).isLiquid())
+                        && isLiquid(map, x - (y%2 == 0 ? 1:0), y+1, z+1))
                         leftliquid = true;
 
                     if (x < Map.getBlocksX()-1  && y < Map.getBlocksY()-1 && z < Map.getBlocksZ()-1
-                        &&  Controller.getMap().getBlock(x + (y%2 == 0 ? 0:1), y+1, z+1).isLiquid())
+                        &&  isLiquid(map, x + (y%2 == 0 ? 0:1), y+1, z+1))
                         rightliquid = true;
 
                     if (leftliquid && rightliquid) liquidfilter = true;
@@ -369,35 +781,35 @@ public class WECamera extends Camera {
 
                 //two 0- and 2-sides hiding the side 1
                 if (x>0 && y < Map.getBlocksY()-1 && z < Map.getBlocksZ()-1
-                    && new Coordinate(x - (y%2 == 0 ? 1:0), y+1, z+1, true).hidingPastBlock())
+                    && hidingPastBlock(map, x - (y%2 == 0 ? 1:0), y+1, z+1))
                     left = false;
 
                 if (x < Map.getBlocksX()-1  && y < Map.getBlocksY()-1 && z < Map.getBlocksZ()-1
-                    && new Coordinate(x + (y%2 == 0 ? 0:1), y+1, z+1, true).hidingPastBlock()
+                    && hidingPastBlock(map, x + (y%2 == 0 ? 0:1), y+1, z+1)
                     )
                     right = false;
 
             } else if (side==2){
                 //block on right hiding the whole right side
-                if (Controller.getMap().getBlock(x, y, z).hasSides()//block on top
+                if (hasSides(map, x, y, z)//block on top
                     && x+1 < Map.getBlocksX() && y+1 < Map.getBlocksY()
-                    && new Coordinate(x + (y%2 == 0 ? 0:1), y+1, z, true).hidingPastBlock()
+                    && hidingPastBlock(map, x + (y%2 == 0 ? 0:1), y+1, z)
                     ) break;
 
                 //liquid
-                if (Controller.getMap().getBlock(x, y, z).isLiquid()){
+                if (isLiquid(map, x, y, z)){
                    if (x < Map.getBlocksX()-1 && y < Map.getBlocksY()-1
-                        && Controller.getMap().getBlock(x + (y%2 == 0 ? 0:1), y+1, z).isLiquid()
+                        && isLiquid(map, x + (y%2 == 0 ? 0:1), y+1, z)
                        ) liquidfilter = true;
 
                     if (y+2 < Map.getBlocksY()
                         &&
-                        Controller.getMap().getBlock(x, y+2, z).isLiquid())
+                        isLiquid(map, x, y+2, z))
                         leftliquid = true;
 
                     if (x+1 < Map.getBlocksX() && y+1 < Map.getBlocksY() && z+1 < Map.getBlocksZ()
                         &&
-                        Controller.getMap().getBlock(x + (y%2 == 0 ? 0:1), y+1, z+1).isLiquid())
+                        isLiquid(map, x + (y%2 == 0 ? 0:1), y+1, z+1))
                         rightliquid = true;
 
                     if (leftliquid && rightliquid) liquidfilter = true;
@@ -406,61 +818,43 @@ public class WECamera extends Camera {
                 //two blocks hiding the right side
                 if (y+2 < Map.getBlocksY()
                     &&
-                    new Coordinate(x, y+2, z, true).hidingPastBlock()
+                    hidingPastBlock(map, x, y+2, z)
                 )
                     left = false;
 
                 if (x+1 < Map.getBlocksX() && y+1 < Map.getBlocksY() && z+1 < Map.getBlocksZ()
                     &&
-                    new Coordinate(x + (y%2 == 0 ? 0:1), y+1, z+1, true).hidingPastBlock()
+                    hidingPastBlock(map, x + (y%2 == 0 ? 0:1), y+1, z+1)
                 )
                     right = false;
             }
 
-            if ((left || right) && !(liquidfilter && Controller.getMap().getBlock(x, y, z).isLiquid())){ //unless both sides are clipped don't clip the whole groundBlock
+            if ((left || right) && !(liquidfilter && isLiquid(map, x, y, z))){ //unless both sides are clipped don't clip the whole groundBlock
                 liquidfilter = false;
-                Controller.getMap().getBlock(x, y, z).setSideClipping(side, false);                            
+                map.setSideClipping(x, y, z, side, false);                            
             }                
         } while (y > 1 && z > 0 //not on bottom of map
             && (left || right) //left or right still visible
-            && (!new Coordinate(x, y, z, true).hidingPastBlock() || new Coordinate(x, y, z, true).hasOffset()));
+            && (!hidingPastBlock(map, x, y, z) || hasOffset(map, x, y, z)));
         
-        DEEPEST_LAYER_VISIVBILITY[x][y] =
-            (z <= 0)
+        //the ground is visible when one of the rays reaches it
+        if ((z <= 0)
             && (left || right) //left or right still visible
-            && (!new Coordinate(x, y, z, true).hidingPastBlock() || new Coordinate(x, y, z, true).hasOffset());
+            && (!hidingPastBlock(map, x, y, z) || hasOffset(map, x, y, z)))
+            map.setGroundVisible(x, y, true);
     }
     
     /**
-     * Traces the ray to a specific groundBlock. This is like the raytracing but only a single ray.
+     * Traces the ray to a specific groundBlock. This is like the raytracing but only a single line of rays.
      * @param coord The coordinate where the ray should point to.
      * @param neighbours True when neighbours groundBlock also should be scanned
      */
     public static void traceRayTo(Coordinate coord, boolean neighbours){
-        Block block = coord.getBlock();
-        int[] coords = coord.getRel();
-                    
-        //Blocks with offset are not in the grid, so can not be calculated => always visible
-        block.setClipped(
-            !block.hasSides() || coord.hasOffset()
-        );
-                    
-       //find start position
-        while (coords[2] < Map.getBlocksZ()-1){
-            coords[1] += 2;
-            coords[2]++;
-        }
-        
-        //trace rays
-        if (neighbours){
-            traceRay(coords[0] - (coords[1]%2 == 0 ? 1:0), coords[1]-1, Block.RIGHTSIDE);
-            traceRay(coords[0] + (coords[1]%2 == 0 ? 0:1), coords[1]-1, Block.LEFTSIDE);
-            traceRay(coords[0], coords[1]+2, Block.TOPSIDE);
-        }
-        traceRay(coords[0], coords[1], Block.LEFTSIDE);
-        traceRay(coords[0], coords[1], Block.TOPSIDE);             
-        traceRay(coords[0], coords[1], Block.RIGHTSIDE);
+        checkLineArrays();
+        markCell(coord.getRelX(), coord.getRelY(), coord.getZ(), neighbours);
+        traceMarkedLines(Controller.getMap(), true);
     }
+    
     /**
      * Set the zoom factor and regenerates the sprites.
      * @param zoom
@@ -496,6 +890,14 @@ public class WECamera extends Camera {
     }
     
     
+    /**
+     * Returns the entity the camera is focusing.
+     * @return the entity or <i>null</i> if the camera does not follow an entity
+     */
+    public AbstractEntity getFocusentity() {
+        return focusentity;
+    }
+    
     /**
      * Returns the left border of the visible area.
      * @return 
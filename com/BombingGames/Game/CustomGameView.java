@@ -4,6 +4,7 @@ import static com.BombingGames.EngineCore.Controller.getLightengine;
 import static com.BombingGames.EngineCore.Controller.getMap;
 import com.BombingGames.EngineCore.GameplayScreen;
 import com.BombingGames.EngineCore.View;
+import com.BombingGames.EngineCore.WECamera;
 import com.BombingGames.MainMenu.MainMenuScreen;
 import com.BombingGames.WurfelEngine;
 import com.badlogic.gdx.Gdx;
@@ -71,6 +72,12 @@ public class CustomGameView extends View{
                      getController().setTimespeed();
                   } 
 
+                 //toggle the parallel raytracing
+                 if (keycode == Input.Keys.R) {
+                     WECamera.setParallelRaytracing(!WECamera.isParallelRaytracing());
+                     GameplayScreen.msgSystem().add("Parallel raytracing: "+WECamera.isParallelRaytracing());
+                 }
+
                  if (keycode == Input.Keys.ESCAPE)// Gdx.app.exit();
                      WurfelEngine.getInstance().setScreen(new MainMenuScreen());
             }
@@ -8,7 +8,6 @@ import com.BombingGames.EngineCore.GameplayScreen;
 import com.BombingGames.EngineCore.Map.Coordinate;
 import com.BombingGames.EngineCore.Map.Map;
 import com.BombingGames.EngineCore.View;
-import com.BombingGames.EngineCore.WECamera;
 import com.BombingGames.MainMenu.MainMenuScreen;
 import com.BombingGames.WurfelEngine;
 import com.badlogic.gdx.Gdx;
@@ -106,7 +105,6 @@ public class ExplosivesDemoView extends View {
             
             if (button == 0){ //left click
                 getMap().setData(coords, Block.getInstance(71, 0, coords));
-                WECamera.traceRayTo(coords, true);
             } else {//right click
                 if (getMap().getDataSafe(coords) instanceof ExplosiveBarrel)
                     ((ExplosiveBarrel) getMap().getDataSafe(coords)).explode();
@@ -0,0 +1,143 @@
+package com.BombingGames;
+
+import com.BombingGames.EngineCore.Controller;
+import com.BombingGames.EngineCore.Map.Chunk;
+import com.BombingGames.EngineCore.Map.Map;
+import com.BombingGames.EngineCore.Map.MapEdit;
+import com.BombingGames.EngineCore.ParallelRaytracer;
+import com.badlogic.gdx.ApplicationListener;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.lwjgl.LwjglApplication;
+import com.badlogic.gdx.backends.lwjgl.LwjglApplicationConfiguration;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ *Measures the scaling of the parallel raytracing with one to every core on generated maps of different chunk sizes. The game is not started, only a small window is opened for libGDX.
+ * Usage: RaytracingBenchmark [runs] [chunk size ...]. A chunk size is written as XxYxZ, e.g. 20x80x10. Without sizes the default chunks (10x40x10) and two bigger sizes are measured.
+ * @author Benedikt Vogler
+ */
+public class RaytracingBenchmark {
+    /**How long the raytracing runs before the measurements, so the threads and the JIT are warmed up. In ms.*/
+    private static final int WARMUPTIME = 3000;
+
+    /**
+     * @param args the runs for every amount of threads and the chunk sizes
+     */
+    public static void main(final String[] args) {
+        LwjglApplicationConfiguration config = new LwjglApplicationConfiguration();
+        config.width = 160;
+        config.height = 120;
+        config.useGL20 = false;
+        config.title = "Raytracing benchmark";
+
+        new LwjglApplication(new ApplicationListener() {
+            @Override
+            public void create() {
+                int runs = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+                String[] sizes = args.length > 1
+                    ? Arrays.copyOfRange(args, 1, args.length)
+                    : new String[]{"10x40x10", "20x80x10", "40x160x20"};
+                for (String size : sizes) {
+                    String[] parts = size.split("x");
+                    Chunk.setSize(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+                    Controller.setMap(createMap());
+                    benchmark(Runtime.getRuntime().availableProcessors(), runs);
+                }
+                Controller.getMap().dispose();
+                Gdx.app.exit();
+            }
+
+            @Override
+            public void resize(int width, int height) {}
+
+            @Override
+            public void render() {}
+
+            @Override
+            public void pause() {}
+
+            @Override
+            public void resume() {}
+
+            @Override
+            public void dispose() {}
+        }, config);
+    }
+
+    /**
+     * Creates a map with hills of grass, some walls and flowers. The same seed is used every time, so the results can be compared.
+     * @return the map. The chunk size must be set before.
+     */
+    public static Map createMap(){
+        Map map = new Map(true);
+        MapEdit edit = map.edit();
+        Random random = new Random(0);
+        for (int x = 0; x < Map.getBlocksX(); x++) {
+            for (int y = 0; y < Map.getBlocksY(); y++) {
+                int height = (int) (Map.getBlocksZ()/2 * (1 + Math.sin(x * .3) * Math.cos(y * .15) / 2));
+                edit.box(x, y, 0, x, y, height-1, 2, 0);//dirt
+                edit.set(x, y, height, 1, 0);//grass
+                float decoration = random.nextFloat();
+                if (decoration < .03f)
+                    edit.box(x, y, height+1, x, y, height+3, 20, 0);//wall
+                else if (decoration < .1f)
+                    edit.set(x, y, height+1, 34, 0);//flower
+            }
+        }
+        edit.commit();
+        map.getDirtyRegion().clear();
+        return map;
+    }
+
+    /**
+     * Measures the raytracing of the whole loaded map with one to <i>maxThreads</i> threads. The serial raytracing is measured as reference.
+     * @param maxThreads the highest amount of threads
+     * @param runs how often the raytracing is measured for every amount of threads
+     * @return a line with the average time and the speedup for every amount of threads
+     */
+    public static String[] benchmark(int maxThreads, int runs){
+        Map map = Controller.getMap();
+        String[] result = new String[maxThreads+1];
+        ForkJoinPool[] pools = new ForkJoinPool[maxThreads];
+        for (int i = 0; i < maxThreads; i++)
+            pools[i] = new ForkJoinPool(i+1);
+
+        //every variant is warmed up before anything is measured, so the JIT does not compile again during a measurement
+        long warmupEnd = System.nanoTime() + WARMUPTIME*1000000L;
+        do {
+            ParallelRaytracer.raytracingAll(map, null);
+            for (ForkJoinPool pool : pools)
+                ParallelRaytracer.raytracingAll(map, pool);
+        } while (System.nanoTime() < warmupEnd);
+
+        float serial = measure(map, null, runs);
+        result[0] = "Raytracing "+Map.getBlocksX()+"x"+Map.getBlocksY()+"x"+Map.getBlocksZ()+" serial: "+format(serial)+"ms";
+        Gdx.app.log("RaytracingBenchmark", result[0]);
+        for (int threads = 1; threads <= maxThreads; threads++) {
+            float time = measure(map, pools[threads-1], runs);
+            pools[threads-1].shutdown();
+            result[threads] = threads+" threads: "+format(time)+"ms, speedup "+format(serial/time);
+            Gdx.app.log("RaytracingBenchmark", result[threads]);
+        }
+        return result;
+    }
+
+    /**
+     * @param map
+     * @param pool null for the serial raytracing
+     * @param runs
+     * @return the average time in ms
+     */
+    private static float measure(Map map, ForkJoinPool pool, int runs){
+        long start = System.nanoTime();
+        for (int i = 0; i < runs; i++)
+            ParallelRaytracer.raytracingAll(map, pool);
+        return (System.nanoTime()-start) / (runs*1000000f);
+    }
+
+    private static String format(float number){
+        return String.valueOf(Math.round(number*100)/100f);
+    }
+}